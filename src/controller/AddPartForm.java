@@ -107,14 +107,7 @@ public class AddPartForm implements Initializable {
         double price = Double.parseDouble(priceString);
         int max = Integer.parseInt(maxString);
         int min = Integer.parseInt(minString);
-        int id = 0;
-
-        // Find the max id in Inventory.allParts and increment for id
-        for (Part currentPart : Inventory.getAllParts()) {
-            if (currentPart.getId() > id)
-                id = currentPart.getId();
-        }
-        id++;
+        int id = Inventory.nextPartId();
 
         // Determine whether Part is InHouse or Outsourced
         if (inHouse) {
@@ -17,6 +17,7 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import model.ErrorAlerts;
 import model.Inventory;
+import model.Matches;
 import model.Part;
 import model.Product;
 
@@ -107,8 +108,14 @@ public class AddProductForm implements Initializable {
         String userSearch = partsSearchField.getText();
         ObservableList<Part> userList;
 
-        // Search by partial or full name
-        userList = Inventory.lookupPart(userSearch);
+        // Search by partial or full name; the table reads the matches a page at a time as it shows them
+        if (userSearch.isEmpty())
+            userList = Inventory.getAllParts();
+        else {
+            Matches<Part> matches = Inventory.searchParts(userSearch);
+            userList = matches.count() == 0 ? FXCollections.observableArrayList()
+                    : FXCollections.observableList(matches.asList());
+        }
 
         // If no matches found, check ID
         if (userList.size() == 0) {
@@ -155,22 +162,13 @@ public class AddProductForm implements Initializable {
         double price = Double.parseDouble(priceField.getText());
         int max = Integer.parseInt(maxField.getText());
         int min = Integer.parseInt(minField.getText());
-        int id = 0;
-
-        // Find the max id in Inventory.allProducts and increment for id
-        for (Product currentProduct : Inventory.getAllProducts()) {
-            if (currentProduct.getId() > id)
-                id = currentProduct.getId();
-        }
-        id++;
+        int id = Inventory.nextProductId();
 
         // Add new Product and set its associatedParts list
         Product userProduct = new Product(id, name, price, stock, min, max);
 
         // Add all associated Parts
-        for (Part currentPart: associatedParts) {
-            userProduct.addAssociatedPart(currentPart);
-        }
+        userProduct.addAssociatedParts(associatedParts);
 
         Inventory.addProduct(userProduct);
 
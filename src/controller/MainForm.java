@@ -1,5 +1,7 @@
 package controller;
 
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -8,6 +10,7 @@ import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -15,21 +18,35 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import model.ErrorAlerts;
 import model.Inventory;
+import model.InventoryListener;
+import model.Matches;
 import model.Part;
 import model.Product;
+import storage.MappedPartCatalog;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controller for the main page of the inventory management system.
  *
  * This class is the controller for the GUI form that displays the Parts and Products in Inventory.
  * Allows the user to search, add, modify, or delete those Parts and Products.
+ * When a part catalog is open, the part table can also show the catalog's read-only Parts in place of Inventory's.
  */
 public class MainForm implements Initializable {
+    // The read-only part catalog opened next to Inventory, or null if there is none
+    private static MappedPartCatalog partCatalog;
+    // Redraws the product table when material costs may have changed, shared by every Main Form shown
+    private static final ProductTableRefresher productTableRefresher = new ProductTableRefresher();
+    // Whether the part table shows the part catalog rather than Inventory's Parts
+    private boolean catalogMode;
+
+
     @FXML
     private TableColumn<Part, Integer> partIDColumn;
     @FXML
@@ -49,11 +66,27 @@ public class MainForm implements Initializable {
     @FXML
     private TableColumn<Product, Double> productPriceColumn;
     @FXML
+    private TableColumn<Product, Double> productCostColumn;
+    @FXML
+    private TableColumn<Product, Double> productMarginColumn;
+    @FXML
     private TableView<Product> productsTable;
     @FXML
     private TextField partsSearchField;
     @FXML
     private TextField productsSearchField;
+    @FXML
+    private Button catalogButton;
+
+    /**
+     * Setter for partCatalog.
+     *
+     * This method is called before the GUI is launched. The Catalog button is only shown when a catalog is set.
+     * @param catalog The part catalog, or null if there is none
+     */
+    public static void setPartCatalog(MappedPartCatalog catalog) {
+        partCatalog = catalog;
+    }
 
     /**
      * The initiliazer for the controller.
@@ -68,6 +101,7 @@ public class MainForm implements Initializable {
         //Set Table View
         partsTable.setItems(Inventory.getAllParts());
         productsTable.setItems(Inventory.getAllProducts());
+        catalogButton.setVisible(partCatalog != null);
 
         //Bind arguments to columns in Table
         partIDColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
@@ -79,6 +113,11 @@ public class MainForm implements Initializable {
         productInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
         productNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         productPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
+        // Read from the cost cached on each Product, so redrawing the table does not add up every BOM again.
+        // These are plain getters rather than properties, so the refresher redraws the table when they may change.
+        productCostColumn.setCellValueFactory(new PropertyValueFactory<>("materialCost"));
+        productMarginColumn.setCellValueFactory(new PropertyValueFactory<>("margin"));
+        productTableRefresher.show(productsTable);
     }
 
     /**
@@ -114,6 +153,10 @@ public class MainForm implements Initializable {
             ErrorAlerts.selectionError("part");
             return;
         }
+        if (catalogMode) {
+            ErrorAlerts.catalogReadOnlyError();
+            return;
+        }
 
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/ModifyPartForm.fxml"));
 
@@ -139,6 +182,7 @@ public class MainForm implements Initializable {
      * Deletes the selected Part.
      *
      * This method removes the selected Part from Inventory's list of Parts.
+     * A Part cannot be deleted if it is associated with a Product.
      * @param event The event that called the method
      */
     public void onDeletePart(ActionEvent event) {
@@ -146,12 +190,35 @@ public class MainForm implements Initializable {
             ErrorAlerts.selectionError("part");
             return;
         }
+        if (catalogMode) {
+            ErrorAlerts.catalogReadOnlyError();
+            return;
+        }
 
         if (!ErrorAlerts.deleteConfirmation("part"))
             return;
 
         Part selectedPart = partsTable.getSelectionModel().getSelectedItem();
-        Inventory.deletePart(selectedPart);
+
+        //Part cannot be deleted while a product uses it; Inventory refuses
+        if (!Inventory.deletePart(selectedPart) && Inventory.isPartUsed(selectedPart.getId()))
+            ErrorAlerts.partInUseDeleteError();
+    }
+
+    /**
+     * Switches the part table between Inventory and the part catalog.
+     *
+     * This method shows the Parts of the read-only part catalog in place of Inventory's Parts, or switches back. The
+     * table is given the catalog's List view, so only the rows on screen are read from the mapped file, however large
+     * the catalog is.
+     * @param event The event that called the method
+     */
+    public void onTogglePartCatalog(ActionEvent event) {
+        catalogMode = !catalogMode;
+        catalogButton.setText(catalogMode ? "Inventory" : "Catalog");
+        partsSearchField.clear();
+        partsTable.setItems(catalogMode ? FXCollections.observableList(partCatalog.asList())
+                : Inventory.getAllParts());
     }
 
     /**
@@ -235,7 +302,7 @@ public class MainForm implements Initializable {
         Product selectedProduct = productsTable.getSelectionModel().getSelectedItem();
 
         //Product cannot be deleted if it contains an associated part
-        if (!selectedProduct.getAllAssociatedParts().isEmpty()) {
+        if (selectedProduct.getAssociatedPartCount() > 0) {
             ErrorAlerts.associatedPartDeleteError();
             return;
         }
@@ -248,14 +315,26 @@ public class MainForm implements Initializable {
      *
      * This method searches the list of Parts in Inventory for those whose names contain the given String or whose
      * IDs match the given ID. It displays the entire list of Parts if an empty String is entered.
+     * While the part table shows the part catalog, only IDs are searched, since the catalog has no name index.
      * @param event The event that called the method
      */
     public void partsSearchHandler(ActionEvent event) {
         String userSearch = partsSearchField.getText();
         ObservableList<Part> userList;
 
-        // Search by partial or full name
-        userList = Inventory.lookupPart(userSearch);
+        if (catalogMode) {
+            searchPartCatalog(userSearch);
+            return;
+        }
+
+        // Search by partial or full name; the table reads the matches a page at a time as it shows them
+        if (userSearch.isEmpty())
+            userList = Inventory.getAllParts();
+        else {
+            Matches<Part> matches = Inventory.searchParts(userSearch);
+            userList = matches.count() == 0 ? FXCollections.observableArrayList()
+                    : FXCollections.observableList(matches.asList());
+        }
 
         // If no matches found, check ID
         if (userList.size() == 0) {
@@ -277,6 +356,29 @@ public class MainForm implements Initializable {
         partsTable.setItems(userList);
     }
 
+    // Shows the catalog Part with the ID entered, or the whole catalog if nothing was entered
+    private void searchPartCatalog(String userSearch) {
+        if (userSearch.isBlank()) {
+            partsTable.setItems(FXCollections.observableList(partCatalog.asList()));
+            return;
+        }
+
+        Part result = null;
+        try {
+            result = partCatalog.lookup(Integer.parseInt(userSearch.trim()));
+        }
+        catch (NumberFormatException e) {
+            // userSearch is not a valid integer
+        }
+
+        if (result == null) {
+            ErrorAlerts.searchNotFoundError("part");
+            return;
+        }
+
+        partsTable.setItems(FXCollections.observableArrayList(result));
+    }
+
     /**
      * Searches the list of Products using the given partial Name or ID.
      *
@@ -288,8 +390,14 @@ public class MainForm implements Initializable {
         String userSearch = productsSearchField.getText();
         ObservableList<Product> userList;
 
-        // Search by partial or full name
-        userList = Inventory.lookupProduct(userSearch);
+        // Search by partial or full name; the table reads the matches a page at a time as it shows them
+        if (userSearch.isEmpty())
+            userList = Inventory.getAllProducts();
+        else {
+            Matches<Product> matches = Inventory.searchProducts(userSearch);
+            userList = matches.count() == 0 ? FXCollections.observableArrayList()
+                    : FXCollections.observableList(matches.asList());
+        }
 
         // If no matches found, check ID
         if (userList.size() == 0) {
@@ -321,4 +429,55 @@ public class MainForm implements Initializable {
         Stage stage = (Stage) ((Node)event.getSource()).getScene().getWindow();
         stage.close();
     }
+
+    /*
+     * Redraws the product table shown after a change that can move a Product's material cost and margin: a Part
+     * added, replaced or deleted, or a bill of materials changed. One listener serves the latest Main Form, so loading
+     * the form again does not add listeners, and it only holds the table weakly. Listeners are told under Inventory's
+     * write lock, so this never reads Inventory there; it queues one redraw on the JavaFX thread for each burst of
+     * changes, and the redraw reads the costs after the lock is released.
+     */
+    private static class ProductTableRefresher implements InventoryListener {
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile WeakReference<TableView<Product>> table = new WeakReference<>(null);
+
+        ProductTableRefresher() {
+            Inventory.addListener(this);
+        }
+
+        void show(TableView<Product> productsTable) {
+            table = new WeakReference<>(productsTable);
+        }
+
+        private void costsChanged() {
+            if (!pending.compareAndSet(false, true))
+                return;
+            Platform.runLater(() -> {
+                pending.set(false);
+                TableView<Product> shown = table.get();
+                if (shown != null)
+                    shown.refresh();
+            });
+        }
+
+        @Override
+        public void partAdded(Part part) {
+            costsChanged();
+        }
+
+        @Override
+        public void partUpdated(Part oldPart, Part newPart) {
+            costsChanged();
+        }
+
+        @Override
+        public void partDeleted(Part part) {
+            costsChanged();
+        }
+
+        @Override
+        public void associatedPartsChanged(Product product) {
+            costsChanged();
+        }
+    }
 }
@@ -127,7 +127,6 @@ public class ModifyPartForm implements Initializable {
         int max = Integer.parseInt(maxString);
         int min = Integer.parseInt(minString);
         int id = selectedPart.getId();
-        int index = Inventory.getAllParts().indexOf(selectedPart);
 
         // Determine whether Part is InHouse or Outsourced
         if (inHouse) {
@@ -138,7 +137,7 @@ public class ModifyPartForm implements Initializable {
             selectedPart = new Outsourced(id, name, price, stock, min, max, inOutString);
         }
 
-        Inventory.updatePart(index, selectedPart);
+        Inventory.updatePartById(id, selectedPart);
 
         // Return to MainForm
         toMainForm(event);
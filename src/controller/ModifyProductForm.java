@@ -1,5 +1,6 @@
 package controller;
 
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -108,7 +109,8 @@ public class ModifyProductForm implements Initializable {
         maxField.setText(Integer.toString(selectedProduct.getMax()));
         minField.setText(Integer.toString(selectedProduct.getMin()));
 
-        associatedParts = selectedProduct.getAllAssociatedParts();
+        // getAllAssociatedParts is read-only, so the form edits its own copy
+        associatedParts = FXCollections.observableArrayList(selectedProduct.getAllAssociatedParts());
         associatedPartsTable.setItems(associatedParts);
     }
 
@@ -123,8 +125,14 @@ public class ModifyProductForm implements Initializable {
         String userSearch = partsSearchField.getText();
         ObservableList<Part> userList;
 
-        // Search by partial or full name
-        userList = Inventory.lookupPart(userSearch);
+        // Search by partial or full name; the table reads the matches a page at a time as it shows them
+        if (userSearch.isEmpty())
+            userList = Inventory.getAllParts();
+        else {
+            Matches<Part> matches = Inventory.searchParts(userSearch);
+            userList = matches.count() == 0 ? FXCollections.observableArrayList()
+                    : FXCollections.observableList(matches.asList());
+        }
 
         // If no matches found, check ID
         if (userList.size() == 0) {
@@ -173,17 +181,14 @@ public class ModifyProductForm implements Initializable {
         int max = Integer.parseInt(maxString);
         int min = Integer.parseInt(minString);
         int id = selectedProduct.getId();
-        int index = Inventory.getAllProducts().indexOf(selectedProduct);
 
         // Add new Product and set its associatedParts list
         Product userProduct = new Product(id, name, price, stock, min, max);
 
         // Add all associated Parts.
-        for (Part currentPart: associatedParts) {
-            userProduct.addAssociatedPart(currentPart);
-        }
+        userProduct.addAssociatedParts(associatedParts);
 
-        Inventory.updateProduct(index, userProduct);
+        Inventory.updateProductById(id, userProduct);
 
         // Go back to MainForm
         toMainForm(event);
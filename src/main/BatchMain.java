@@ -0,0 +1,406 @@
+package main;
+
+import model.Buildability;
+import model.Inventory;
+import model.InventoryValuation;
+import model.Part;
+import model.Product;
+import service.Edits;
+import service.InventoryService;
+import storage.CsvImporter;
+import storage.InventoryExporter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless mode for scripted jobs.
+ *
+ * This class runs a script of commands against Inventory without starting JavaFX, so nightly jobs can load, change,
+ * query and export the inventory on machines without a display. It has its own main method because the Java launcher
+ * starts the JavaFX toolkit for any main class that extends Application, as Main does. Inventory is loaded from the
+ * same data directory as the GUI, and a snapshot is written when the script ends. The script is read from the file
+ * named by the first argument, or from standard input. The same entry point can also run the HTTP service
+ * (InventoryService) with the arguments --serve PORT. The service listens on the loopback interface only, unless the
+ * inventory.bind system property gives another address, such as 0.0.0.0 for every interface.
+ *
+ * <p> Each line of the script is one command. Blank lines and lines starting with # are ignored, and values with
+ * spaces can be put in double quotes.
+ * <pre>
+ * import FILE [ERROR_FILE]              Imports a CSV file (see CsvImporter)
+ * export csv|json FILE                  Exports Inventory as CSV or JSON lines
+ * catalog BASE                          Writes the Parts as a read-only part catalog (see MappedPartCatalog)
+ * query part|product id ID              Prints the Part or Product with the ID
+ * query part|product name TEXT          Prints the Parts or Products whose names contain TEXT
+ * query used-by PART_ID                 Prints the Products that use a Part
+ * query below-min                       Prints the Parts below their minimum stock
+ * query value                           Prints the total value of the Parts in stock
+ * query valuation                       Prints the value of the stock by InHouse, Outsourced company and Products
+ * query buildable [PRODUCT_ID]          Prints how many of each Product the Part stock allows
+ * update part|product ID FIELD=VALUE... Changes the fields of a Part or Product
+ * delete part|product ID...             Deletes Parts or Products
+ * adjust part|product ID DELTA          Adds DELTA (which may be negative) to the stock
+ * snapshot                              Writes a snapshot and shortens the change log
+ * </pre>
+ * The fields that can be updated are those read by Edits. Consecutive update commands are applied together as one
+ * batch. </p>
+ *
+ * <p> Query results are printed as JSON lines, in the format of InventoryExporter. A command that fails is reported
+ * on standard error with its line number and the script carries on. As in the Main Form, a Part that is associated
+ * with a Product is not deleted. </p>
+ *
+ * <p> When a part catalog is opened through the inventory.catalog system property (see InventoryStore),
+ * "query part id" also finds the Parts that are only in the catalog. </p>
+ */
+public class BatchMain {
+    private final InventoryStore store;
+    private final PrintStream out;
+    private final Map<Integer, Part> pendingParts = new LinkedHashMap<>();
+    private final Map<Integer, Product> pendingProducts = new LinkedHashMap<>();
+    private int pendingLine;
+    private int failures;
+
+    /**
+     * Constructor for BatchMain.
+     *
+     * @param store The files keeping Inventory, used by the snapshot command
+     * @param out Where query results are printed
+     */
+    BatchMain(InventoryStore store, PrintStream out) {
+        this.store = store;
+        this.out = out;
+    }
+
+    /**
+     * Main method for the headless mode.
+     *
+     * This method loads Inventory, runs the script and saves Inventory. It exits with status 1 if a command failed.
+     * With the arguments --serve PORT it runs InventoryService on the port instead, until the program is stopped.
+     * @param args The path of the script, or none (or -) to read the script from standard input
+     * @throws IOException If Inventory or the script cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args.length > 1 ? Edits.parseInt(args[1]) : 8080);
+            return;
+        }
+
+        Path scriptPath = args.length > 0 && !args[0].equals("-") ? Path.of(args[0]) : null;
+
+        int failures;
+        try (InventoryStore store = InventoryStore.open()) {
+            failures = new BatchMain(store, System.out).run(scriptPath);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Runs a script.
+     *
+     * @param scriptPath The script file, or null to read the script from standard input
+     * @return Returns the number of commands that failed
+     * @throws IOException If the script cannot be read
+     */
+    int run(Path scriptPath) throws IOException {
+        try (BufferedReader script = scriptPath == null
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(scriptPath, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = script.readLine()) != null) {
+                lineNumber++;
+                List<String> words = split(line);
+                if (words.isEmpty() || words.get(0).startsWith("#"))
+                    continue;
+
+                if (!words.get(0).equals("update"))
+                    flushUpdates();
+                try {
+                    execute(words, lineNumber);
+                } catch (IOException | RuntimeException e) {
+                    fail(lineNumber, e);
+                }
+            }
+
+            flushUpdates();
+        }
+
+        out.flush();
+        return failures;
+    }
+
+    // Runs the HTTP service; the store is saved by a shutdown hook when the program is stopped
+    private static void serve(int port) throws IOException {
+        // Terminals keep their connections open; the JDK server would close all but 200 idle ones (see
+        // InventoryService). Must be set before the first server is created.
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null)
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+        String bind = System.getProperty("inventory.bind");
+        InetAddress address = bind != null ? InetAddress.getByName(bind) : InetAddress.getLoopbackAddress();
+
+        InventoryStore store = InventoryStore.open();
+        store.startCheckpoints(5, TimeUnit.MINUTES);
+
+        InventoryService service = new InventoryService(address, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.stop(5);
+            try {
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "inventory-shutdown"));
+
+        service.getAlerts().addListener(alert -> System.err.println("Stock alert: " + alert));
+        service.start();
+        System.err.println("Serving Inventory on " + address.getHostAddress() + " port " + service.getPort());
+    }
+
+    private void execute(List<String> words, int lineNumber) throws IOException {
+        switch (words.get(0)) {
+            case "import":
+                Path csv = Path.of(argument(words, 1));
+                Path errors = words.size() > 2 ? Path.of(words.get(2))
+                        : csv.resolveSibling(csv.getFileName() + ".errors.csv");
+                CsvImporter.Result result = new CsvImporter().importFile(csv, errors);
+                System.err.println("Imported " + result.getImported() + " rows, rejected " + result.getRejected()
+                        + (result.getRejected() > 0 ? " (see " + errors + ")" : ""));
+                break;
+            case "export":
+                String format = argument(words, 1);
+                if (format.equals("csv"))
+                    InventoryExporter.exportCsv(Path.of(argument(words, 2)));
+                else if (format.equals("json"))
+                    InventoryExporter.exportJsonLines(Path.of(argument(words, 2)));
+                else
+                    throw new IllegalArgumentException("Export format must be csv or json.");
+                break;
+            case "catalog":
+                InventoryStore.writeCatalog(Path.of(argument(words, 1)));
+                break;
+            case "query":
+                query(words);
+                break;
+            case "update":
+                if (pendingParts.isEmpty() && pendingProducts.isEmpty())
+                    pendingLine = lineNumber;
+                update(words);
+                break;
+            case "delete":
+                boolean parts = isPart(argument(words, 1));
+                List<Integer> ids = new ArrayList<>();
+                for (int i = 2; i < words.size(); i++)
+                    ids.add(Edits.parseInt(words.get(i)));
+                int deleted = parts ? Inventory.deleteParts(ids) : Inventory.deleteProducts(ids);
+                // Inventory keeps a Part that is still associated with a Product
+                for (int i = 0; parts && i < ids.size(); i++) {
+                    if (Inventory.isPartUsed(ids.get(i)))
+                        System.err.println("Line " + lineNumber + ": Part " + ids.get(i) + " is used by a product.");
+                }
+                System.err.println("Deleted " + deleted + " of " + (words.size() - 2));
+                break;
+            case "adjust":
+                boolean part = isPart(argument(words, 1));
+                int id = Edits.parseInt(argument(words, 2));
+                int delta = Edits.parseInt(argument(words, 3));
+                if (!(part ? Inventory.adjustPartStock(id, delta) : Inventory.adjustProductStock(id, delta)))
+                    throw new IllegalArgumentException((part ? "Part " : "Product ") + id
+                            + " does not exist or its stock would leave the range from min to max.");
+                break;
+            case "snapshot":
+                store.checkpoint();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command " + words.get(0) + ".");
+        }
+    }
+
+    private void query(List<String> words) {
+        StringBuilder row = new StringBuilder(256);
+        switch (argument(words, 1)) {
+            case "part":
+            case "product":
+                boolean part = isPart(words.get(1));
+                String key = argument(words, 2);
+                String value = argument(words, 3);
+                if (key.equals("id")) {
+                    int id = Edits.parseInt(value);
+                    if (part)
+                        print(row, store.lookupPart(id));
+                    else
+                        print(row, Inventory.lookupProduct(id));
+                }
+                else if (key.equals("name")) {
+                    if (part)
+                        for (Part match : Inventory.lookupPart(value))
+                            print(row, match);
+                    else
+                        for (Product match : Inventory.lookupProduct(value))
+                            print(row, match);
+                }
+                else
+                    throw new IllegalArgumentException("Query by id or name.");
+                break;
+            case "used-by":
+                for (Product product : Inventory.lookupProductsUsingPart(Edits.parseInt(argument(words, 2))))
+                    print(row, product);
+                break;
+            case "below-min":
+                for (Part match : Inventory.lookupPartsBelowMin())
+                    print(row, match);
+                break;
+            case "value":
+                out.println(Inventory.getPartsValue());
+                break;
+            case "valuation":
+                InventoryValuation valuation = Inventory.getValuation();
+                out.println("{\"inHouse\":" + valuation.getInHouseValue() + ",\"outsourced\":"
+                        + valuation.getOutsourcedValue() + ",\"products\":" + valuation.getProductsValue()
+                        + ",\"total\":" + valuation.getTotalValue() + "}");
+                for (String companyName : valuation.getCompanyNames()) {
+                    StringBuilder line = new StringBuilder("{\"company\":");
+                    InventoryExporter.appendJsonString(line, companyName);
+                    line.append(",\"value\":").append(valuation.getCompanyValue(companyName)).append('}');
+                    out.println(line);
+                }
+                break;
+            case "buildable":
+                try (Buildability buildability = Buildability.watch()) {
+                    for (Map.Entry<Integer, Integer> entry : buildability.getAllBuildable().entrySet()) {
+                        if (words.size() < 3 || entry.getKey() == Edits.parseInt(words.get(2)))
+                            out.println("{\"id\":" + entry.getKey() + ",\"buildable\":" + entry.getValue() + "}");
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query " + words.get(1) + ".");
+        }
+    }
+
+    // Queues a changed copy of a Part or Product; the queue is applied by flushUpdates
+    private void update(List<String> words) {
+        boolean part = isPart(argument(words, 1));
+        int id = Edits.parseInt(argument(words, 2));
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 3; i < words.size(); i++) {
+            String word = words.get(i);
+            int equals = word.indexOf('=');
+            if (equals <= 0)
+                throw new IllegalArgumentException("Expected FIELD=VALUE but found " + word + ".");
+            fields.put(word.substring(0, equals), word.substring(equals + 1));
+        }
+
+        if (part) {
+            Part current = pendingParts.containsKey(id) ? pendingParts.get(id) : Inventory.lookupPart(id);
+            if (current == null)
+                throw new IllegalArgumentException("No such part exists.");
+            pendingParts.put(id, Edits.editPart(current, id, fields));
+        }
+        else {
+            Product current = pendingProducts.containsKey(id) ? pendingProducts.get(id) : Inventory.lookupProduct(id);
+            if (current == null)
+                throw new IllegalArgumentException("No such product exists.");
+            pendingProducts.put(id, Edits.editProduct(current, id, fields));
+        }
+    }
+
+    /*
+     * Applies the queued updates as one batch of Parts and one of Products.
+     * A failed batch changes nothing and is reported at the line of the first queued update.
+     */
+    private void flushUpdates() {
+        try {
+            if (!pendingParts.isEmpty())
+                Inventory.updateParts(pendingParts);
+        } catch (RuntimeException e) {
+            fail(pendingLine, e);
+        }
+
+        try {
+            if (!pendingProducts.isEmpty())
+                Inventory.updateProducts(pendingProducts);
+        } catch (RuntimeException e) {
+            fail(pendingLine, e);
+        }
+
+        pendingParts.clear();
+        pendingProducts.clear();
+    }
+
+    private void print(StringBuilder row, Part part) {
+        if (part == null)
+            return;
+        row.setLength(0);
+        InventoryExporter.appendJson(row, part);
+        out.println(row);
+    }
+
+    private void print(StringBuilder row, Product product) {
+        if (product == null)
+            return;
+        row.setLength(0);
+        InventoryExporter.appendJson(row, product);
+        out.println(row);
+    }
+
+    private void fail(int lineNumber, Exception e) {
+        failures++;
+        System.err.println("Line " + lineNumber + ": " + (e.getMessage() != null ? e.getMessage().trim() : e));
+    }
+
+    private static boolean isPart(String type) {
+        if (type.equals("part"))
+            return true;
+        if (type.equals("product"))
+            return false;
+        throw new IllegalArgumentException("Expected part or product.");
+    }
+
+    private static String argument(List<String> words, int index) {
+        if (index >= words.size())
+            throw new IllegalArgumentException("Missing argument for " + words.get(0) + ".");
+        return words.get(index);
+    }
+
+    // Splits a line at spaces, keeping double-quoted text together
+    private static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean inWord = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inWord = true;
+            }
+            else if (Character.isWhitespace(c) && !quoted) {
+                if (inWord)
+                    words.add(word.toString());
+                word.setLength(0);
+                inWord = false;
+            }
+            else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+
+        if (inWord)
+            words.add(word.toString());
+        return words;
+    }
+}
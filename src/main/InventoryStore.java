@@ -0,0 +1,150 @@
+package main;
+
+import model.Inventory;
+import model.Part;
+import storage.MappedPartCatalog;
+import storage.SnapshotFile;
+import storage.WriteAheadLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The files that keep Inventory between runs.
+ *
+ * This class restores Inventory from the latest snapshot and the change log written after it, both found in the
+ * data directory (the inventory.dir system property, "data" by default), and keeps the log open while the program
+ * runs. It is shared by the GUI and the headless mode. While the program runs, a new snapshot can be written in the
+ * background every few minutes.
+ *
+ * <p> If the inventory.catalog system property names a part catalog (see MappedPartCatalog, without extension), it is
+ * opened read-only next to Inventory. The catalog is never loaded into Inventory or changed; lookupPart reads a Part
+ * from it when Inventory does not have one with the ID, and the Main Form can show it in the part table. </p>
+ */
+class InventoryStore implements Closeable {
+    private final Path snapshotPath;
+    private final WriteAheadLog log;
+    private final MappedPartCatalog catalog;
+    private ScheduledExecutorService snapshotter;
+
+    private InventoryStore(Path snapshotPath, WriteAheadLog log, MappedPartCatalog catalog) {
+        this.snapshotPath = snapshotPath;
+        this.log = log;
+        this.catalog = catalog;
+    }
+
+    /**
+     * Loads Inventory from the data directory and starts recording changes.
+     *
+     * @return Returns the opened store
+     * @throws IOException If the snapshot, the change log or the part catalog cannot be opened
+     */
+    static InventoryStore open() throws IOException {
+        Path dataDir = Path.of(System.getProperty("inventory.dir", "data"));
+        Files.createDirectories(dataDir);
+
+        String catalogPath = System.getProperty("inventory.catalog");
+        MappedPartCatalog catalog = catalogPath != null ? MappedPartCatalog.open(Path.of(catalogPath)) : null;
+
+        Path snapshotPath = dataDir.resolve("inventory.snapshot");
+        long snapshotLsn = SnapshotFile.load(snapshotPath);
+        return new InventoryStore(snapshotPath, WriteAheadLog.open(dataDir.resolve("inventory.wal"), snapshotLsn),
+                catalog);
+    }
+
+    /**
+     * Finds a Part in Inventory or, failing that, in the part catalog.
+     *
+     * @param partId The ID of the Part to be looked up
+     * @return Returns the Part from Inventory, a read-only copy from the catalog, or null if neither has the ID
+     */
+    Part lookupPart(int partId) {
+        Part part = Inventory.lookupPart(partId);
+        if (part == null && catalog != null)
+            part = catalog.lookup(partId);
+        return part;
+    }
+
+    /**
+     * Getter for catalog.
+     *
+     * @return Returns the part catalog, or null if none was opened
+     */
+    MappedPartCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Writes the Parts now in Inventory as a part catalog.
+     *
+     * @param base The path of the catalog, without extension
+     * @throws IOException If the catalog cannot be written
+     */
+    static void writeCatalog(Path base) throws IOException {
+        MappedPartCatalog.write(base, Inventory.snapshot().getParts());
+    }
+
+    /**
+     * Writes a snapshot and shortens the change log.
+     *
+     * @throws IOException If the snapshot or the log cannot be written
+     */
+    void checkpoint() throws IOException {
+        SnapshotFile.checkpoint(snapshotPath, log);
+    }
+
+    /**
+     * Starts writing a snapshot in the background at a fixed interval.
+     *
+     * @param interval The time between the end of one snapshot and the start of the next
+     * @param unit The unit of the interval
+     */
+    synchronized void startCheckpoints(long interval, TimeUnit unit) {
+        if (snapshotter != null)
+            return;
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops the background snapshots, writes a final snapshot, so the next start does not have to replay the change
+     * log, and closes the log.
+     *
+     * @throws IOException If the snapshot or the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotter != null) {
+                snapshotter.shutdown();
+                try {
+                    snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        try {
+            checkpoint();
+        } finally {
+            log.close();
+        }
+    }
+}
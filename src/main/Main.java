@@ -2,12 +2,16 @@
 
 package main;
 
+import controller.MainForm;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main class for an inventory management system.
  *
@@ -19,6 +23,7 @@ import javafx.stage.Stage;
  * <p> JavaDoc comments found in Inventory_C482/JavaDoc/index.html </p>
  */
 public class Main extends Application {
+    private static InventoryStore store;
 
     /**
      * Launches the GUI.
@@ -35,13 +40,34 @@ public class Main extends Application {
         stage.show();
     }
 
+    /**
+     * Saves any pending changes when the GUI closes.
+     *
+     * This method writes a final snapshot, so the next start does not have to replay the change log, and closes
+     * the log.
+     * @throws Exception Exceptions that may occur while saving
+     */
+    @Override
+    public void stop() throws Exception {
+        store.close();
+    }
+
     /**
      * Main method for the Main class.
      *
      * This is the main method for the Main class and launches the program.
+     * It first restores Inventory from the latest snapshot and the change log written after it, both found in the
+     * data directory (the inventory.dir system property, "data" by default). A new snapshot is then written in the
+     * background every few minutes. If a part catalog was opened (see InventoryStore), the Main Form can browse it.
+     * <p> Jobs that do not need the GUI should run BatchMain instead, which never starts JavaFX. </p>
      * @param args Arguments for launching the program
+     * @throws IOException If the snapshot or the change log cannot be opened
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        store = InventoryStore.open();
+        store.startCheckpoints(5, TimeUnit.MINUTES);
+        MainForm.setPartCatalog(store.getCatalog());
+
         launch(args);
     }
 }
@@ -0,0 +1,180 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The Parts a Product is made of, by ID, and how many of each it needs.
+ *
+ * This class stores a bill of materials as two parallel arrays: the distinct Part IDs, in the order they were first
+ * added, and the quantity of each. It holds IDs rather than Part objects, so the Parts are looked up in Inventory
+ * when they are needed and a Part that is updated through Inventory is never left behind in a Product. A bill of
+ * materials is never changed once made; Product replaces it as a whole.
+ */
+public class BillOfMaterials {
+    static final BillOfMaterials EMPTY = new BillOfMaterials(new int[0], new int[0], 0);
+
+    // Above this many entries, merging goes through a hash index instead of scanning
+    private static final int SCAN_LIMIT = 16;
+
+    final int[] partIds;
+    final int[] quantities;
+    private final int total;
+
+    private BillOfMaterials(int[] partIds, int[] quantities, int total) {
+        this.partIds = partIds;
+        this.quantities = quantities;
+        this.total = total;
+    }
+
+    /**
+     * Makes a bill of materials from Part IDs and quantities.
+     *
+     * This method lists the IDs in the given order. An ID given more than once gets the sum of its quantities.
+     * @param partIds The IDs of the Parts
+     * @param quantities How many of each Part are needed, in the same order as partIds
+     * @return Returns the bill of materials
+     * @throws IllegalArgumentException If the arrays differ in length or a quantity is less than 1
+     */
+    public static BillOfMaterials of(int[] partIds, int[] quantities) {
+        if (partIds.length != quantities.length)
+            throw new IllegalArgumentException("Every Part ID needs a quantity.");
+        for (int quantity : quantities) {
+            if (quantity < 1)
+                throw new IllegalArgumentException("Quantity must be at least 1.");
+        }
+
+        return partIds.length == 0 ? EMPTY : EMPTY.plus(partIds, quantities);
+    }
+
+    /**
+     * Returns the number of distinct Parts.
+     *
+     * @return Returns the number of entries
+     */
+    public int size() {
+        return partIds.length;
+    }
+
+    /**
+     * Returns the Part ID of an entry.
+     *
+     * @param index The position of the entry, from 0 to size() - 1
+     * @return Returns the ID of the Part
+     */
+    public int getPartId(int index) {
+        return partIds[index];
+    }
+
+    /**
+     * Returns the quantity of an entry.
+     *
+     * @param index The position of the entry, from 0 to size() - 1
+     * @return Returns how many of the Part are needed, which is at least 1
+     */
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Returns the quantity needed of a Part.
+     *
+     * @param partId The ID of the Part
+     * @return Returns how many of the Part are needed, or 0 if it is not listed
+     */
+    public int getQuantityOf(int partId) {
+        int index = indexOf(partId);
+        return index < 0 ? 0 : quantities[index];
+    }
+
+    /**
+     * Returns the total quantity.
+     *
+     * @return Returns the sum of the quantities, which is the number of Parts counting repeats
+     */
+    public int getTotalQuantity() {
+        return total;
+    }
+
+    // A copy with more of several Parts. New IDs are added at the end in the given order.
+    BillOfMaterials plus(int[] ids, int[] counts) {
+        int[] newIds = Arrays.copyOf(partIds, partIds.length + ids.length);
+        int[] newQuantities = Arrays.copyOf(quantities, newIds.length);
+        int size = partIds.length;
+        int newTotal = total;
+
+        IdIndex positions = null;
+        for (int i = 0; i < ids.length; i++) {
+            if (positions == null && size > SCAN_LIMIT) {
+                positions = new IdIndex();
+                for (int j = 0; j < size; j++)
+                    positions.put(newIds[j], j);
+            }
+
+            int index = positions != null ? positions.get(ids[i]) : indexOf(newIds, size, ids[i]);
+            if (index < 0) {
+                index = size++;
+                newIds[index] = ids[i];
+                if (positions != null)
+                    positions.put(ids[i], index);
+            }
+            newQuantities[index] = Math.addExact(newQuantities[index], counts[i]);
+            newTotal = Math.addExact(newTotal, counts[i]);
+        }
+
+        return new BillOfMaterials(Arrays.copyOf(newIds, size), Arrays.copyOf(newQuantities, size), newTotal);
+    }
+
+    // A copy with one less of the Part, or null if it is not listed
+    BillOfMaterials minusOne(int partId) {
+        int index = indexOf(partId);
+        if (index < 0)
+            return null;
+        if (quantities[index] > 1) {
+            int[] newQuantities = quantities.clone();
+            newQuantities[index]--;
+            return new BillOfMaterials(partIds, newQuantities, total - 1);
+        }
+        return without(index);
+    }
+
+    // A copy that lists the Part under a new ID, merged with the entry of that ID if there is one
+    BillOfMaterials renamed(int oldId, int newId) {
+        int index = indexOf(oldId);
+        if (index < 0 || oldId == newId)
+            return this;
+
+        if (indexOf(newId) < 0) {
+            int[] newIds = partIds.clone();
+            newIds[index] = newId;
+            return new BillOfMaterials(newIds, quantities, total);
+        }
+
+        return without(index).plus(new int[] {newId}, new int[] {quantities[index]});
+    }
+
+    // A copy without the entry at index
+    private BillOfMaterials without(int index) {
+        if (partIds.length == 1)
+            return EMPTY;
+
+        int[] newIds = new int[partIds.length - 1];
+        int[] newQuantities = new int[newIds.length];
+        System.arraycopy(partIds, 0, newIds, 0, index);
+        System.arraycopy(partIds, index + 1, newIds, index, newIds.length - index);
+        System.arraycopy(quantities, 0, newQuantities, 0, index);
+        System.arraycopy(quantities, index + 1, newQuantities, index, newIds.length - index);
+        return new BillOfMaterials(newIds, newQuantities, total - quantities[index]);
+    }
+
+    private int indexOf(int partId) {
+        return indexOf(partIds, partIds.length, partId);
+    }
+
+    private static int indexOf(int[] ids, int size, int partId) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == partId)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,239 @@
+package model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Works out how many of each Product can be built from the Parts in stock.
+ *
+ * This class keeps the bill of materials of every Product, which lists each Part once with a quantity, and the
+ * number of the Product that the current Part stock allows: the smallest stock / quantity over its Parts. A
+ * Product without associated Parts, or with a Part no longer in Inventory, can build 0.
+ *
+ * <p> The full calculation is split across the fork-join pool. After that, each change to Inventory only updates the
+ * Products that depend on the changed Part, found through a Part to Product dependency map, so a stock adjustment
+ * costs time in proportion to the number of Products using the Part rather than to the catalog. </p>
+ *
+ * <p> Each Product is recalculated outside the result map, so walking a large bill of materials does not hold up
+ * other Products in the same bin of the map. After storing a result, the Product is recalculated once more and
+ * stored again if the stock moved meanwhile, so concurrent stock adjustments leave every result matching the latest
+ * stock. The full calculation runs under Inventory's lock, so no Part or Product can be replaced or removed while it
+ * is being read. </p>
+ */
+public class Buildability implements InventoryListener, AutoCloseable {
+    // Products per fork-join task
+    private static final int THRESHOLD = 256;
+
+    // Part ID -> current Part
+    private final ConcurrentHashMap<Integer, Part> parts = new ConcurrentHashMap<>();
+    // Product ID -> bill of materials
+    private final ConcurrentHashMap<Integer, BillOfMaterials> boms = new ConcurrentHashMap<>();
+    // Part ID -> IDs of the Products whose bill of materials lists it
+    private final ConcurrentHashMap<Integer, Set<Integer>> dependents = new ConcurrentHashMap<>();
+    // Product ID -> number that can be built
+    private final ConcurrentHashMap<Integer, Integer> buildable = new ConcurrentHashMap<>();
+
+    private Buildability() {
+    }
+
+    /**
+     * Starts watching Inventory.
+     *
+     * This method calculates every Product once, in parallel, and then follows each change.
+     * @return Returns the calculator
+     */
+    public static Buildability watch() {
+        Buildability buildability = new Buildability();
+        Inventory.addListener(buildability, buildability::recomputeAll);
+        return buildability;
+    }
+
+    /**
+     * Calculates every Product again from a snapshot of Inventory.
+     *
+     * The Products are divided between the tasks of the common fork-join pool. Inventory is not changed until the
+     * calculation is done, so no Part or Product can be replaced or removed while it is being read.
+     */
+    public void recomputeAll() {
+        Inventory.addListener(null, this::recomputeAll);
+    }
+
+    // Called with Inventory's write lock held
+    private void recomputeAll(InventorySnapshot snapshot) {
+        for (Part part : snapshot.getParts())
+            parts.put(part.getId(), part);
+
+        List<Product> products = snapshot.getProducts();
+        ForkJoinPool.commonPool().invoke(new BomTask(products, 0, products.size()));
+    }
+
+    /**
+     * Returns how many of a Product can be built.
+     *
+     * @param productId The ID of the Product
+     * @return Returns the number that the current Part stock allows, or -1 if there is no such Product
+     */
+    public int getBuildable(int productId) {
+        Integer count = buildable.get(productId);
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * Returns how many of every Product can be built.
+     *
+     * @return Returns a new map from Product ID to the number that can be built
+     */
+    public Map<Integer, Integer> getAllBuildable() {
+        return new HashMap<>(buildable);
+    }
+
+    /**
+     * Stops following changes to Inventory.
+     */
+    @Override
+    public void close() {
+        Inventory.removeListener(this);
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        parts.put(part.getId(), part);
+        recomputeDependents(part.getId());
+    }
+
+    @Override
+    public void partUpdated(Part oldPart, Part newPart) {
+        if (oldPart.getId() != newPart.getId()) {
+            parts.remove(oldPart.getId());
+            recomputeDependents(oldPart.getId());
+        }
+        partAdded(newPart);
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        parts.remove(part.getId());
+        recomputeDependents(part.getId());
+    }
+
+    @Override
+    public void partStockAdjusted(Part part, int delta) {
+        recomputeDependents(part.getId());
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        setBom(product.getId(), product.getBillOfMaterials());
+    }
+
+    @Override
+    public void productUpdated(Product oldProduct, Product newProduct) {
+        if (oldProduct.getId() != newProduct.getId())
+            productDeleted(oldProduct);
+        productAdded(newProduct);
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        BillOfMaterials old = boms.remove(product.getId());
+        if (old != null)
+            unlink(product.getId(), old);
+        buildable.remove(product.getId());
+    }
+
+    @Override
+    public void associatedPartsChanged(Product product) {
+        productAdded(product);
+    }
+
+    // Replaces a Product's bill of materials, moves its dependency links and recalculates it
+    private void setBom(int productId, BillOfMaterials bom) {
+        BillOfMaterials old = boms.put(productId, bom);
+        if (old != null)
+            unlink(productId, old);
+        for (int partId : bom.partIds)
+            dependents.computeIfAbsent(partId, key -> ConcurrentHashMap.newKeySet()).add(productId);
+        recompute(productId);
+    }
+
+    private void unlink(int productId, BillOfMaterials bom) {
+        for (int partId : bom.partIds) {
+            dependents.computeIfPresent(partId, (key, products) -> {
+                products.remove(productId);
+                return products.isEmpty() ? null : products;
+            });
+        }
+    }
+
+    private void recomputeDependents(int partId) {
+        Set<Integer> products = dependents.get(partId);
+        if (products == null)
+            return;
+        for (int productId : products)
+            recompute(productId);
+    }
+
+    // Bills of materials only change under Inventory's write lock, so only the stock can move while this runs. The
+    // last thread to store a result has read the stock again after storing it, so the result it leaves is current.
+    private void recompute(int productId) {
+        BillOfMaterials bom = boms.get(productId);
+        if (bom == null) {
+            buildable.remove(productId);
+            return;
+        }
+
+        int count = buildable(bom, parts);
+        while (true) {
+            buildable.put(productId, count);
+            int again = buildable(bom, parts);
+            if (again == count)
+                return;
+            count = again;
+        }
+    }
+
+    // The smallest stock / quantity over the Parts of a bill of materials
+    private static int buildable(BillOfMaterials bom, Map<Integer, Part> parts) {
+        if (bom.size() == 0)
+            return 0;
+
+        int result = Integer.MAX_VALUE;
+        for (int i = 0; i < bom.size() && result > 0; i++) {
+            Part part = parts.get(bom.getPartId(i));
+            result = part == null ? 0 : Math.min(result, Math.max(part.getStock(), 0) / bom.getQuantity(i));
+        }
+        return result;
+    }
+
+    // Builds the bills of materials and results of a range of Products, splitting large ranges in two
+    private class BomTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Product> products;
+        private final int from;
+        private final int to;
+
+        BomTask(List<Product> products, int from, int to) {
+            this.products = products;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BomTask(products, from, middle), new BomTask(products, middle, to));
+                return;
+            }
+
+            for (Product product : products.subList(from, to))
+                setBom(product.getId(), product.getBillOfMaterials());
+        }
+    }
+}
@@ -68,13 +68,38 @@ public class ErrorAlerts {
         alert.showAndWait();
     }
 
+    /**
+     * Displays an Alert warning the user that the part cannot be deleted while a product uses it.
+     *
+     * This method displays an Alert window informing the user that a Part cannot be deleted if it is still an
+     * associated Part of a Product.
+     */
+    public static void partInUseDeleteError() {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setHeaderText("Part In Use");
+        alert.setContentText("A part cannot be deleted while it is associated with a product.");
+        alert.showAndWait();
+    }
+
+    /**
+     * Displays an Alert warning the user that a Part of the part catalog cannot be changed.
+     *
+     * This method displays an Alert window informing the user that the Parts shown from the part catalog are read-only.
+     */
+    public static void catalogReadOnlyError() {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setHeaderText("Part Catalog");
+        alert.setContentText("Parts in the part catalog are read-only. Switch back to Inventory to change parts.");
+        alert.showAndWait();
+    }
+
     /**
      * Validates the information entered by the user.
      *
      * This method validates the information entered when adding or modifying Parts or Products.
      * A name must contain data.
      * Inventory must be an integer. Inventory must be between max and min.
-     * Price must be a double.
+     * Price must be a double that is finite and not negative.
      * Max and min must be integers. Max cannot be smaller than min.
      * (InHouse and Outsourced Parts have an additional parameter that is checked elsewhere.)
      * @param name Name of the Product or Part
@@ -103,7 +128,7 @@ public class ErrorAlerts {
         }
 
         try {
-            Double.parseDouble(price);
+            errorMessage.append(priceValidation(Double.parseDouble(price)));
         } catch (NumberFormatException e) {
             errorMessage.append("Price must be a valid double.\n");
         }
@@ -122,12 +147,49 @@ public class ErrorAlerts {
             isValidMinMax = false;
         }
 
-        if (isValidMinMax && maxNum < minNum)
+        if (isValidInventory && isValidMinMax)
+            errorMessage.append(rangeValidation(inventoryNum, maxNum, minNum));
+        else if (isValidMinMax && maxNum < minNum)
             errorMessage.append("Max cannot be less than Min.\n");
 
-        if (isValidInventory && isValidMinMax && (inventoryNum < minNum || inventoryNum > maxNum))
-            errorMessage.append("Inventory cannot be less than Min or greater than Max.\n");
-
         return errorMessage.toString();
     }
+
+    /**
+     * Validates the price of a Part or Product that is already a number.
+     *
+     * This method applies the same price check as formValidation to values that did not come from a form. A price
+     * cannot be NaN, infinite or negative.
+     * @param price The price of the Product or Part
+     * @return Returns a String containing the message of the failed check, or an empty String
+     */
+    public static String priceValidation(double price) {
+        if (!Double.isFinite(price))
+            return "Price must be a valid double.\n";
+        if (price < 0)
+            return "Price cannot be negative.\n";
+        return "";
+    }
+
+    /**
+     * Validates the inventory, max and min of a Part or Product that are already numbers.
+     *
+     * This method applies the same range checks as formValidation to values that did not come from a form, such as
+     * rows of an imported file. Max cannot be smaller than min, and inventory must be between min and max.
+     * @param inventory The number of items in stock
+     * @param max The maximum number that can be in stock
+     * @param min The minimum number that can be in stock
+     * @return Returns a String containing messages from any failed checks
+     */
+    public static String rangeValidation(int inventory, int max, int min) {
+        String errorMessage = "";
+
+        if (max < min)
+            errorMessage += "Max cannot be less than Min.\n";
+
+        if (inventory < min || inventory > max)
+            errorMessage += "Inventory cannot be less than Min or greater than Max.\n";
+
+        return errorMessage;
+    }
 }
@@ -0,0 +1,167 @@
+package model;
+
+/**
+ * Hash index from an ID to a position in one of Inventory's lists.
+ *
+ * This class maps int IDs to non-negative int values, usually list positions, without boxing either of them. Each
+ * entry is packed into a single long (ID in the high half, value + 1 in the low half) and stored in an open-addressing table with linear probing,
+ * so a lookup is a few array reads. An entry of 0 marks an empty bucket.
+ */
+class IdIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] entries = new long[MIN_CAPACITY];
+    private int size;
+
+    /**
+     * Finds the position stored for the given ID.
+     *
+     * This method returns the list position mapped to the ID, or -1 if the ID is not in the index.
+     * @param id The ID to look up
+     * @return Returns the position of the ID, or -1 if not found
+     */
+    int get(int id) {
+        long[] table = entries;
+        int mask = table.length - 1;
+
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            long entry = table[i];
+            if (entry == 0)
+                return -1;
+            if (keyOf(entry) == id)
+                return valueOf(entry);
+        }
+    }
+
+    /**
+     * Stores the position for the given ID.
+     *
+     * This method maps the ID to the given position, replacing any position it was mapped to before.
+     * @param id The ID to store
+     * @param position The list position of the ID
+     */
+    void put(int id, int position) {
+        if ((size + 1) * 4 > entries.length * 3)
+            resize(entries.length * 2);
+
+        int mask = entries.length - 1;
+        long newEntry = pack(id, position);
+
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            long entry = entries[i];
+            if (entry == 0) {
+                entries[i] = newEntry;
+                size++;
+                return;
+            }
+            if (keyOf(entry) == id) {
+                entries[i] = newEntry;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the given ID from the index.
+     *
+     * This method removes the ID and shifts any following entries of the probe run back, so no tombstones are left.
+     * @param id The ID to remove
+     * @return Returns the position the ID was mapped to, or -1 if it was not in the index
+     */
+    int remove(int id) {
+        int mask = entries.length - 1;
+        int i = hash(id) & mask;
+
+        while (true) {
+            long entry = entries[i];
+            if (entry == 0)
+                return -1;
+            if (keyOf(entry) == id)
+                break;
+            i = (i + 1) & mask;
+        }
+
+        int removed = valueOf(entries[i]);
+
+        // Shift back later entries whose home bucket is at or before the freed slot
+        int free = i;
+        for (int j = (i + 1) & mask; entries[j] != 0; j = (j + 1) & mask) {
+            int home = hash(keyOf(entries[j])) & mask;
+            if (((j - home) & mask) >= ((j - free) & mask)) {
+                entries[free] = entries[j];
+                free = j;
+            }
+        }
+        entries[free] = 0;
+        size--;
+
+        return removed;
+    }
+
+    /**
+     * Lists the IDs in the index.
+     *
+     * @return Returns a new array of every ID in the index, in no particular order
+     */
+    int[] keys() {
+        int[] keys = new int[size];
+        int count = 0;
+        for (long entry : entries) {
+            if (entry != 0)
+                keys[count++] = keyOf(entry);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Removes every entry from the index.
+     */
+    void clear() {
+        entries = new long[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Getter for size.
+     *
+     * @return Returns the number of IDs in the index
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] old = entries;
+        long[] table = new long[capacity];
+        int mask = capacity - 1;
+
+        for (long entry : old) {
+            if (entry == 0)
+                continue;
+            int i = hash(keyOf(entry)) & mask;
+            while (table[i] != 0)
+                i = (i + 1) & mask;
+            table[i] = entry;
+        }
+
+        entries = table;
+    }
+
+    private static long pack(int id, int position) {
+        return ((long) id << 32) | ((position + 1) & 0xFFFFFFFFL);
+    }
+
+    private static int keyOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int valueOf(long entry) {
+        return (int) entry - 1;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,25 +3,126 @@ package model;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * The Inventory used by the inventory management system.
  *
  * This is the Class used by the inventory management system to track the stored Parts and Products.
  * It contains ObservableLists of Parts and Products and methods to act on those lists.
+ *
+ * <p> The methods of Inventory are safe to call from any thread. Changes take a write lock, searches share a read lock,
+ * and ID lookups read optimistically without locking unless a change happens at the same moment. Stock adjustments
+ * are the exception among changes: they share the read lock and change the stock in place with compare-and-set. The lists returned
+ * by getAllParts() and getAllProducts() are not guarded, and a TableView bound to them must only see changes made on
+ * the JavaFX Application Thread. </p>
  */
 public class Inventory {
     private static ObservableList<Part> allParts = FXCollections.observableArrayList();
     private static ObservableList<Product> allProducts = FXCollections.observableArrayList();
 
+    // ID -> position in allParts/allProducts, kept in sync by every method that changes the lists
+    private static final IdIndex partIds = new IdIndex();
+    private static final IdIndex productIds = new IdIndex();
+
+    // Trigram indexes over the names, kept in sync the same way
+    private static final NameIndex<Part> partNames = new NameIndex<>(Part::getId);
+    private static final NameIndex<Product> productNames = new NameIndex<>(Product::getId);
+
+    // Primitive copy of allParts' fields, row for row, used for full scans
+    private static final PartColumns partColumns = new PartColumns();
+
+    // Part ID -> IDs of the Products in allProducts that list the Part
+    private static final UsageIndex partUsage = new UsageIndex();
+
+    // Part IDs sorted by price, stock and stock/min, for range and top-K lookups
+    private static final PartRanges partRanges = new PartRanges(partColumns);
+    // Set while a bulk change runs that rebuilds partRanges once at the end
+    private static boolean deferRanges;
+
+    // Running totals of the value in stock, changed along with every item
+    private static final Valuation valuation = new Valuation();
+
+    // Next unused IDs. Adding an item moves its sequence past the item's ID, so reloaded data never collides.
+    private static final AtomicInteger partSequence = new AtomicInteger(1);
+    private static final AtomicInteger productSequence = new AtomicInteger(1);
+
+    // Guards the lists and every index above. A single lock is used because each change touches shared indexes.
+    private static final StampedLock lock = new StampedLock();
+
+    private static final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+    // Changes made under the write lock, told to the listeners once the lists and indexes agree again
+    private static final List<Consumer<InventoryListener>> events = new ArrayList<>();
+
+    // The longest name every storage format can hold: writeUTF takes up to 65535 bytes, and a char needs at most 3
+    private static final int MAX_TEXT_LENGTH = 65535 / 3;
+
+    // Count the adds, updates and deletes of each list, so lazy search results can tell they are out of date
+    private static int partVersion;
+    private static int productVersion;
+
+    /**
+     * Registers a listener for changes to Inventory.
+     *
+     * This method adds a listener that is told about every Part and Product that is added, replaced or removed from
+     * now on. The listener can also refuse changes before they are made; every method that changes Inventory then
+     * throws the listener's IllegalStateException.
+     * @param listener The listener to be added
+     */
+    public static void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    /*
+     * Registers a listener and fills it in from a snapshot, both under the write lock, so no change can be made or
+     * reach a listener until the seed returns. Every change is then either in the snapshot or told to the listener
+     * afterwards, never both. The listener may be null to only run the seed. The seed must not lock Inventory.
+     */
+    static void addListener(InventoryListener listener, Consumer<InventorySnapshot> seed) {
+        long stamp = lock.writeLock();
+        try {
+            if (listener != null)
+                listeners.add(listener);
+            seed.accept(copy(0));
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Unregisters a listener for changes to Inventory.
+     *
+     * @param listener The listener to be removed
+     */
+    public static void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
 
     /**
      *Adds a Part to the ObservableList of Parts.
      *
      * This method adds a Part to the ObservableList of all Parts in Inventory.
      * @param newPart The new Part to be added to the list
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
      */
     public static void addPart(Part newPart) {
-        allParts.add(newPart);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(newPart, newPart.getId());
+            insertPart(newPart);
+        } finally {
+            unlockWrite(stamp);
+        }
     }
 
     /**
@@ -29,44 +130,164 @@ public class Inventory {
      *
      * This method adds a Product to the ObservableList of all Products in Inventory.
      * @param newProduct The new Product to be added to the list
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
      */
     public static void addProduct(Product newProduct) {
-        allProducts.add(newProduct);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(newProduct, newProduct.getId());
+            insertProduct(newProduct);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reserves a new Part ID.
+     *
+     * This method returns the next unused Part ID. It is safe to call from several threads at once, and every call
+     * returns a different ID.
+     * @return Returns an ID that no Part in Inventory has
+     */
+    public static int nextPartId() {
+        return partSequence.getAndIncrement();
+    }
+
+    /**
+     * Reserves a new Product ID.
+     *
+     * This method returns the next unused Product ID. It is safe to call from several threads at once, and every call
+     * returns a different ID.
+     * @return Returns an ID that no Product in Inventory has
+     */
+    public static int nextProductId() {
+        return productSequence.getAndIncrement();
+    }
+
+    /**
+     * Returns the next Part ID without reserving it.
+     *
+     * This method is used to save the sequence, so an ID that was handed out is not handed out again after a restart,
+     * even if the Part that had it was deleted.
+     * @return Returns the ID the next call to nextPartId() would return, unless another thread gets there first
+     */
+    public static int peekNextPartId() {
+        return partSequence.get();
+    }
+
+    /**
+     * Returns the next Product ID without reserving it.
+     *
+     * This method is used to save the sequence, so an ID that was handed out is not handed out again after a restart,
+     * even if the Product that had it was deleted.
+     * @return Returns the ID the next call to nextProductId() would return, unless another thread gets there first
+     */
+    public static int peekNextProductId() {
+        return productSequence.get();
+    }
+
+    /**
+     * Moves the Part ID sequence forward to a saved value.
+     *
+     * This method restores a sequence saved with peekNextPartId(). It never moves the sequence back, so loading
+     * older data cannot make it hand out an ID again.
+     * @param nextId The lowest ID nextPartId() may return from now on
+     */
+    public static void restorePartSequence(int nextId) {
+        partSequence.accumulateAndGet(nextId, Math::max);
+    }
+
+    /**
+     * Moves the Product ID sequence forward to a saved value.
+     *
+     * This method restores a sequence saved with peekNextProductId(). It never moves the sequence back, so loading
+     * older data cannot make it hand out an ID again.
+     * @param nextId The lowest ID nextProductId() may return from now on
+     */
+    public static void restoreProductSequence(int nextId) {
+        productSequence.accumulateAndGet(nextId, Math::max);
     }
 
     /**
      * Finds a Part using the given ID.
      *
      * This method finds the Part in allParts list using the given ID of the Part.
+     * The ID index is used, so the lookup takes constant time regardless of the number of Parts.
      * @param partId The ID of the Part to be looked up
-     * @return Returns the first Part found in allParts list with given partId, or null if not found
+     * @return Returns the Part found in allParts list with given partId, or null if not found
      */
     public static Part lookupPart(int partId) {
-        // Iterate through the allParts list and compare Part.id to partId
-        for (Part currentPart : allParts) {
-            if (currentPart.getId() == partId)
-                return currentPart;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Part result = partAt(partIds.get(partId));
+                if (lock.validate(stamp))
+                    return result;
+            } catch (RuntimeException e) {
+                // A change was in progress during the read; read again under the lock
+            }
         }
 
-        //No matching Part found
-        return null;
+        stamp = lock.readLock();
+        try {
+            return partAt(partIds.get(partId));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Finds the Parts with the given IDs, all at one moment; IDs not in Inventory give null. Used by Product.
+    static Part[] lookupParts(int[] ids) {
+        Part[] parts = new Part[ids.length];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                for (int i = 0; i < ids.length; i++)
+                    parts[i] = partAt(partIds.get(ids[i]));
+                if (lock.validate(stamp))
+                    return parts;
+            } catch (RuntimeException e) {
+                // A change was in progress during the read; read again under the lock
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            for (int i = 0; i < ids.length; i++)
+                parts[i] = partAt(partIds.get(ids[i]));
+            return parts;
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
      * Finds a Product using the given ID.
      *
      * This method finds the Product in allProducts list using the given ID of the Product.
+     * The ID index is used, so the lookup takes constant time regardless of the number of Products.
      * @param productId The ID of the Product to be looked up
-     * @return Returns the first Product found in allProducts list with given productId, or null if not found
+     * @return Returns the Product found in allProducts list with given productId, or null if not found
      */
     public static Product lookupProduct(int productId) {
-        for (Product currentProduct : allProducts) {
-            if (currentProduct.getId() == productId)
-                return currentProduct;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Product result = productAt(productIds.get(productId));
+                if (lock.validate(stamp))
+                    return result;
+            } catch (RuntimeException e) {
+                // A change was in progress during the read; read again under the lock
+            }
         }
 
-        // No matching Product found
-        return null;
+        stamp = lock.readLock();
+        try {
+            return productAt(productIds.get(productId));
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -74,19 +295,54 @@ public class Inventory {
      *
      * This method creates an ObservableList of Parts in Inventory whose name contains the given String partName.
      * It ignores case. It returns the entire allParts list if partName is an empty String.
+     * The name index narrows the search down to Parts that share the rarest trigram of partName.
      * @param partName The String to be compared to the Parts' names
      * @return Returns an ObservableList of parts found whose name contains the given String
      */
     public static ObservableList<Part> lookupPart(String partName) {
-        ObservableList<Part> searchParts = FXCollections.observableArrayList();
-        partName = partName.toLowerCase();
+        long stamp = lock.readLock();
+        try {
+            if (partName.isEmpty())
+                return FXCollections.observableArrayList(allParts);
 
-        for (Part currentPart : allParts) {
-            if (currentPart.getName().toLowerCase().contains(partName))
-                searchParts.add(currentPart);
+            return FXCollections.observableArrayList(partNames.search(partName));
+        } finally {
+            lock.unlockRead(stamp);
         }
+    }
 
-        return searchParts;
+    /**
+     * Searches the Parts by name without collecting the matches.
+     *
+     * This method returns at once. The matches are found as the result's pages or stream are read, so a search that
+     * matches most of a large catalog does not allocate a list of all of it.
+     * @param partName The String to be compared to the Parts' names, ignoring case; an empty String matches every Part
+     * @return Returns the lazy matches, which follow later changes to the Parts (see Matches)
+     */
+    public static Matches<Part> searchParts(String partName) {
+        long stamp = lock.readLock();
+        try {
+            return new Matches<>(allParts, partNames, partIds::get, lock, () -> partVersion, partName);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Searches the Products by name without collecting the matches.
+     *
+     * @param productName The String to be compared to the Products' names, ignoring case
+     * @return Returns the lazy matches, which follow later changes to the Products (see Matches)
+     * @see #searchParts(String)
+     */
+    public static Matches<Product> searchProducts(String productName) {
+        long stamp = lock.readLock();
+        try {
+            return new Matches<>(allProducts, productNames, productIds::get, lock, () -> productVersion,
+                    productName);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -94,19 +350,199 @@ public class Inventory {
      *
      * This method creates an ObservableList of Products in Inventory whose name contains the given String productName.
      * It ignores case. It returns the entire allProducts list if productName is an empty String.
+     * The name index narrows the search down to Products that share the rarest trigram of productName.
      * @param productName The String to be compared to the Products' names
      * @return Returns an ObservableList of Products found whose name contains the given String
      */
     public static ObservableList<Product> lookupProduct(String productName) {
-        ObservableList<Product> searchProducts = FXCollections.observableArrayList();
-        productName = productName.toLowerCase();
+        long stamp = lock.readLock();
+        try {
+            if (productName.isEmpty())
+                return FXCollections.observableArrayList(allProducts);
+
+            return FXCollections.observableArrayList(productNames.search(productName));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forms a list of all Products that use the given Part.
+     *
+     * This method finds every Product in Inventory that has the Part as an associated Part, using the reverse index
+     * instead of searching every Product.
+     * @param partId The ID of the Part
+     * @return Returns an ObservableList of the Products that use the Part
+     */
+    public static ObservableList<Product> lookupProductsUsingPart(int partId) {
+        ObservableList<Product> usedBy = FXCollections.observableArrayList();
+
+        long stamp = lock.readLock();
+        try {
+            for (int productId : partUsage.productsUsing(partId))
+                usedBy.add(productAt(productIds.get(productId)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        return usedBy;
+    }
+
+    /**
+     * Checks whether any Product uses the given Part.
+     *
+     * This method checks the reverse index for a Product in Inventory that has the Part as an associated Part. A used
+     * Part cannot be deleted, so after a delete fails this tells whether the Part was in use.
+     * @param partId The ID of the Part
+     * @return Returns true if the Part is associated with at least one Product
+     */
+    public static boolean isPartUsed(int partId) {
+        long stamp = lock.readLock();
+        try {
+            return partUsage.isUsed(partId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forms a list of all Parts whose stock is below their min.
+     *
+     * This method reads the stock/min ratio index, which is brought up to date with any stock adjustments first, so
+     * it gives the same Parts as a query for belowMin().
+     * @return Returns an ObservableList of the Parts that need to be restocked, in the order of allParts
+     */
+    public static ObservableList<Part> lookupPartsBelowMin() {
+        return query(new PartQuery().belowMin());
+    }
 
-        for (Product currentProduct: allProducts) {
-            if (currentProduct.getName().toLowerCase().contains(productName))
-                searchProducts.add(currentProduct);
+    /**
+     * Forms a list of the Parts that meet every condition of a query.
+     *
+     * This method starts from the index of the most selective condition, intersects the indexes of the other
+     * conditions where that is cheaper than checking the candidates one by one, and checks the rest against the Parts'
+     * columns, so only the matching Parts are read. See PartQueryPlanner.
+     * @param query The conditions
+     * @return Returns an ObservableList of the matching Parts, in the order of allParts
+     */
+    public static ObservableList<Part> query(PartQuery query) {
+        ObservableList<Part> parts = FXCollections.observableArrayList();
+        if (query.hasPrice && !(query.minPrice <= query.maxPrice))
+            return parts;
+
+        long stamp = lock.readLock();
+        try {
+            int[] rows = new PartQueryPlanner(query, partNames, partRanges, partColumns, partIds).rows();
+            for (int row : rows)
+                parts.add(allParts.get(row));
+        } finally {
+            lock.unlockRead(stamp);
         }
 
-        return searchProducts;
+        return parts;
+    }
+
+    /**
+     * Forms a list of the Parts whose price, stock or stock/min ratio is in a range.
+     *
+     * This method reads the sorted index on the key, so its cost depends on the number of matches rather than on the
+     * number of Parts.
+     * @param key The field to compare
+     * @param low The smallest value, inclusive, in dollars for the price
+     * @param high The largest value, inclusive
+     * @return Returns an ObservableList of the matching Parts, in ascending order of the key
+     */
+    public static ObservableList<Part> lookupPartsInRange(PartKey key, double low, double high) {
+        long stamp = lock.readLock();
+        try {
+            if (!(low <= high))
+                return FXCollections.observableArrayList();
+            long lowKey = PartRanges.lowKey(key, low);
+            long highKey = PartRanges.highKey(key, high);
+            return partsWithIds(partRanges.range(key, lowKey, highKey));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the Parts whose price, stock or stock/min ratio is in a range.
+     *
+     * This method reads the sorted index on the key and does not look at the Parts.
+     * @param key The field to compare
+     * @param low The smallest value, inclusive, in dollars for the price
+     * @param high The largest value, inclusive
+     * @return Returns the number of matching Parts
+     */
+    public static int countPartsInRange(PartKey key, double low, double high) {
+        long stamp = lock.readLock();
+        try {
+            if (!(low <= high))
+                return 0;
+            return partRanges.count(key, PartRanges.lowKey(key, low), PartRanges.highKey(key, high));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forms a list of the Parts with the lowest price, stock or stock/min ratio.
+     *
+     * For example, the lowest stock/min ratios are the Parts that most need restocking.
+     * @param key The field to compare
+     * @param count The largest number of Parts to return
+     * @return Returns an ObservableList of up to count Parts, lowest first
+     */
+    public static ObservableList<Part> lookupLowestParts(PartKey key, int count) {
+        long stamp = lock.readLock();
+        try {
+            return partsWithIds(partRanges.lowest(key, count));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Forms a list of the Parts with the highest price, stock or stock/min ratio.
+     *
+     * @param key The field to compare
+     * @param count The largest number of Parts to return
+     * @return Returns an ObservableList of up to count Parts, highest first
+     */
+    public static ObservableList<Part> lookupHighestParts(PartKey key, int count) {
+        long stamp = lock.readLock();
+        try {
+            return partsWithIds(partRanges.highest(key, count));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Calculates the value of all Parts in stock.
+     *
+     * This method reads the running total kept by every change to Inventory, so it does not look at the Parts.
+     * @return Returns the total value of the Parts in Inventory
+     */
+    public static double getPartsValue() {
+        return getValuation().getPartsValue();
+    }
+
+    /**
+     * Returns the value of the stock in Inventory.
+     *
+     * This method copies the running totals, which are kept in whole cents and changed by every add, update, delete
+     * and stock adjustment, so its cost depends only on the number of supplier companies. Stock adjustments still in
+     * progress on other threads may not be counted yet.
+     * @return Returns the value of the InHouse Parts, the Outsourced Parts by company, and the Products
+     */
+    public static InventoryValuation getValuation() {
+        long stamp = lock.readLock();
+        try {
+            return valuation.snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 
     /**
@@ -115,9 +551,75 @@ public class Inventory {
      * This method places the given Part into the allParts list at the specified index.
      * @param index Index where the Part will be placed in the list
      * @param selectedPart The Part that will be placed in the list
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
      */
     public static void updatePart(int index, Part selectedPart) {
-        allParts.set(index, selectedPart);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(selectedPart, selectedPart.getId());
+            replacePartAt(index, selectedPart);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the Part that has the given ID.
+     *
+     * This method finds the Part's position through the ID index and places the given Part there, so no list search
+     * is needed.
+     * @param partId The ID of the Part to be replaced
+     * @param selectedPart The Part that will be placed in the list
+     * @return Returns true if a Part with the ID was found and replaced
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
+     */
+    public static boolean updatePartById(int partId, Part selectedPart) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(selectedPart, partId);
+            int index = partIds.get(partId);
+            if (index < 0)
+                return false;
+
+            replacePartAt(index, selectedPart);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the Part that has the given ID, keeping its current stock.
+     *
+     * This method gives the new Part the stock the old one has at the moment of the replacement, under the write lock
+     * that holds off stock adjustments, so an adjustment made while the new Part was being built from a copy of the
+     * old one is kept rather than overwritten with the copied stock.
+     * @param partId The ID of the Part to be replaced
+     * @param selectedPart The Part that will be placed in the list; its ID and stock are set by this method
+     * @return Returns true if a Part with the ID was found and replaced
+     * @throws IllegalArgumentException If the new Part has invalid fields, such as a min and max that the current
+     * stock is outside of
+     */
+    public static boolean updatePartKeepingStock(int partId, Part selectedPart) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = partIds.get(partId);
+            if (index < 0)
+                return false;
+
+            selectedPart.setId(partId);
+            selectedPart.setStock(allParts.get(index).getStock());
+            checkFields("Part", partId, selectedPart.getName(), selectedPart.getStock(), selectedPart.getMin(),
+                    selectedPart.getMax());
+            checkValues(selectedPart, partId);
+            replacePartAt(index, selectedPart);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
     }
 
     /**
@@ -126,20 +628,181 @@ public class Inventory {
      * This method places the given Product into the allProducts list at the specified index.
      * @param index Index where the Product will be placed in the list
      * @param newProduct The Product that will be placed in the list
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
      */
     public static void updateProduct(int index, Product newProduct) {
-        allProducts.set(index, newProduct);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(newProduct, newProduct.getId());
+            replaceProductAt(index, newProduct);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the Product that has the given ID.
+     *
+     * This method finds the Product's position through the ID index and places the given Product there, so no list
+     * search is needed.
+     * @param productId The ID of the Product to be replaced
+     * @param newProduct The Product that will be placed in the list
+     * @return Returns true if a Product with the ID was found and replaced
+     * @throws IllegalArgumentException If a name is missing or too long to be stored, or the price is not valid
+     */
+    public static boolean updateProductById(int productId, Product newProduct) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            checkValues(newProduct, productId);
+            int index = productIds.get(productId);
+            if (index < 0)
+                return false;
+
+            replaceProductAt(index, newProduct);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the Product that has the given ID, keeping its current stock.
+     *
+     * This method works like updatePartKeepingStock.
+     * @param productId The ID of the Product to be replaced
+     * @param newProduct The Product that will be placed in the list; its ID and stock are set by this method
+     * @return Returns true if a Product with the ID was found and replaced
+     * @throws IllegalArgumentException If the new Product has invalid fields, such as a min and max that the current
+     * stock is outside of
+     */
+    public static boolean updateProductKeepingStock(int productId, Product newProduct) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = productIds.get(productId);
+            if (index < 0)
+                return false;
+
+            newProduct.setId(productId);
+            newProduct.setStock(allProducts.get(index).getStock());
+            checkFields("Product", productId, newProduct.getName(), newProduct.getStock(), newProduct.getMin(),
+                    newProduct.getMax());
+            checkValues(newProduct, productId);
+            replaceProductAt(index, newProduct);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a change to the stock of a Part.
+     *
+     * This method applies the change with a compare-and-set on the Part's stock, retrying if another thread changed it
+     * first, so concurrent receipts and picks never overwrite each other. Only the read lock is held, so adjustments
+     * run in parallel with each other and with lookups. The change is refused if the new stock would be outside the
+     * Part's min and max.
+     * @param partId The ID of the Part
+     * @param delta The number of items received (positive) or picked (negative)
+     * @return Returns true if the stock was changed, or false if there is no such Part or the change is out of bounds
+     */
+    public static boolean adjustPartStock(int partId, int delta) {
+        boolean adjusted = adjustPartStock(partId, delta, true);
+        afterChange();
+        return adjusted;
+    }
+
+    /**
+     * Adds a change to the stock of a Product.
+     *
+     * This method works like adjustPartStock.
+     * @param productId The ID of the Product
+     * @param delta The number of items received (positive) or picked (negative)
+     * @return Returns true if the stock was changed, or false if there is no such Product or the change is out of
+     * bounds
+     */
+    public static boolean adjustProductStock(int productId, int delta) {
+        boolean adjusted = adjustProductStock(productId, delta, true);
+        afterChange();
+        return adjusted;
+    }
+
+    /**
+     * Adds a change to the stock of a Part without checking min and max.
+     *
+     * This method is used to replay logged adjustments. Adjustments made at the same moment may be logged in a
+     * different order than they were applied, so checking the bounds again could wrongly refuse one of them.
+     * @param partId The ID of the Part
+     * @param delta The change to the stock
+     * @return Returns true if a Part with the ID was found
+     */
+    public static boolean replayPartStock(int partId, int delta) {
+        boolean adjusted = adjustPartStock(partId, delta, false);
+        afterChange();
+        return adjusted;
+    }
+
+    /**
+     * Adds a change to the stock of a Product without checking min and max.
+     *
+     * This method is used to replay logged adjustments, as replayPartStock is.
+     * @param productId The ID of the Product
+     * @param delta The change to the stock
+     * @return Returns true if a Product with the ID was found
+     */
+    public static boolean replayProductStock(int productId, int delta) {
+        boolean adjusted = adjustProductStock(productId, delta, false);
+        afterChange();
+        return adjusted;
     }
 
     /**
      * Removes the given Part from the list of Parts.
      *
-     * This method removes the selected Part from the list of Parts found in Inventory.
+     * This method removes the selected Part from the list of Parts found in Inventory. A Part that is associated with
+     * a Product is kept. The reverse index is checked under the same write lock as the removal, so no Product can start
+     * using the Part in between.
      * @param selectedPart The Part that will be removed from the list
-     * @return Returns true if the Part was found and deleted. (If the list changed)
+     * @return Returns true if the Part was found and deleted. (If the list changed) Returns false if it was not found
+     * or a Product uses it.
      */
     public static boolean deletePart(Part selectedPart) {
-        return allParts.remove(selectedPart);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = partIds.get(selectedPart.getId());
+            if (index < 0 || allParts.get(index) != selectedPart || partUsage.isUsed(selectedPart.getId()))
+                return false;
+
+            removePartAt(index);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the Part that has the given ID.
+     *
+     * This method removes the Part with the given ID from the list of Parts found in Inventory. As with deletePart, a
+     * Part that is associated with a Product is kept.
+     * @param partId The ID of the Part that will be removed
+     * @return Returns the removed Part, or null if no Part has the ID or a Product uses it
+     */
+    public static Part deletePartById(int partId) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = partIds.get(partId);
+            if (index < 0 || partUsage.isUsed(partId))
+                return null;
+
+            return removePartAt(index);
+        } finally {
+            unlockWrite(stamp);
+        }
     }
 
     /**
@@ -150,13 +813,795 @@ public class Inventory {
      * @return Returns true if the Product was found and deleted. (If the list changed)
      */
     public static boolean deleteProduct(Product selectedProduct) {
-        return allProducts.remove(selectedProduct);
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = productIds.get(selectedProduct.getId());
+            if (index < 0 || allProducts.get(index) != selectedProduct)
+                return false;
+
+            removeProductAt(index);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the Product that has the given ID.
+     *
+     * This method removes the Product with the given ID from the list of Products found in Inventory.
+     * @param productId The ID of the Product that will be removed
+     * @return Returns the removed Product, or null if no Product has the ID
+     */
+    public static Product deleteProductById(int productId) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            int index = productIds.get(productId);
+            if (index < 0)
+                return null;
+
+            return removeProductAt(index);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a batch of Parts to the ObservableList of Parts.
+     *
+     * This method checks every Part first and adds none of them if one is invalid. Parts with an ID of 0 or less are
+     * given a new ID. All the Parts are then added to allParts in one change, so a TableView showing the list is
+     * notified once instead of once per Part.
+     * @param newParts The new Parts to be added to the list
+     * @throws IllegalArgumentException If a Part has invalid fields or an ID that is already used
+     */
+    public static void addParts(Collection<? extends Part> newParts) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            IdIndex batchIds = new IdIndex();
+            for (Part part : newParts) {
+                checkFields("Part", part.getId(), part.getName(), part.getStock(), part.getMin(), part.getMax());
+                checkValues(part, part.getId());
+                if (part.getId() > 0) {
+                    if (partIds.get(part.getId()) >= 0 || batchIds.get(part.getId()) >= 0)
+                        throw new IllegalArgumentException("Part " + part.getId() + ": ID is already used.");
+                    batchIds.put(part.getId(), 0);
+                }
+            }
+
+            int index = allParts.size();
+            deferRanges = isBulk(newParts.size());
+            for (Part part : newParts) {
+                if (part.getId() <= 0)
+                    part.setId(nextPartId());
+                indexPart(part, index++);
+            }
+            rebuildDeferredRanges();
+            allParts.addAll(newParts);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a batch of Products to the ObservableList of Products.
+     *
+     * This method checks every Product first and adds none of them if one is invalid. Products with an ID of 0 or
+     * less are given a new ID. All the Products are then added to allProducts in one change.
+     * @param newProducts The new Products to be added to the list
+     * @throws IllegalArgumentException If a Product has invalid fields or an ID that is already used
+     */
+    public static void addProducts(Collection<? extends Product> newProducts) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            IdIndex batchIds = new IdIndex();
+            for (Product product : newProducts) {
+                checkFields("Product", product.getId(), product.getName(), product.getStock(), product.getMin(),
+                        product.getMax());
+                checkValues(product, product.getId());
+                if (product.getId() > 0) {
+                    if (productIds.get(product.getId()) >= 0 || batchIds.get(product.getId()) >= 0)
+                        throw new IllegalArgumentException("Product " + product.getId() + ": ID is already used.");
+                    batchIds.put(product.getId(), 0);
+                }
+            }
+
+            int index = allProducts.size();
+            for (Product product : newProducts) {
+                if (product.getId() <= 0)
+                    product.setId(nextProductId());
+                indexProduct(product, index++);
+            }
+            allProducts.addAll(newProducts);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces a batch of Parts, keyed by ID.
+     *
+     * This method checks every replacement first and changes nothing if one is invalid. Each Part takes the ID it is
+     * keyed by. The new contents of allParts are published in one change.
+     * @param updatedParts The replacement Parts, keyed by the ID of the Part each one replaces
+     * @throws IllegalArgumentException If an ID is not in Inventory or a replacement has invalid fields
+     */
+    public static void updateParts(Map<Integer, ? extends Part> updatedParts) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            for (Map.Entry<Integer, ? extends Part> entry : updatedParts.entrySet()) {
+                Part part = entry.getValue();
+                if (partIds.get(entry.getKey()) < 0)
+                    throw new IllegalArgumentException("Part " + entry.getKey() + ": No such part exists.");
+                checkFields("Part", entry.getKey(), part.getName(), part.getStock(), part.getMin(), part.getMax());
+                checkValues(part, entry.getKey());
+            }
+
+            Part[] rows = allParts.toArray(new Part[0]);
+            deferRanges = isBulk(updatedParts.size());
+            for (Map.Entry<Integer, ? extends Part> entry : updatedParts.entrySet()) {
+                Part part = entry.getValue();
+                part.setId(entry.getKey());
+
+                int index = partIds.get(entry.getKey());
+                Part oldPart = rows[index];
+                rows[index] = part;
+                reindexPart(index, oldPart, part);
+            }
+            rebuildDeferredRanges();
+            allParts.setAll(rows);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces a batch of Products, keyed by ID.
+     *
+     * This method checks every replacement first and changes nothing if one is invalid. Each Product takes the ID it
+     * is keyed by. The new contents of allProducts are published in one change.
+     * @param updatedProducts The replacement Products, keyed by the ID of the Product each one replaces
+     * @throws IllegalArgumentException If an ID is not in Inventory or a replacement has invalid fields
+     */
+    public static void updateProducts(Map<Integer, ? extends Product> updatedProducts) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            for (Map.Entry<Integer, ? extends Product> entry : updatedProducts.entrySet()) {
+                Product product = entry.getValue();
+                if (productIds.get(entry.getKey()) < 0)
+                    throw new IllegalArgumentException("Product " + entry.getKey() + ": No such product exists.");
+                checkFields("Product", entry.getKey(), product.getName(), product.getStock(), product.getMin(),
+                        product.getMax());
+                checkValues(product, entry.getKey());
+            }
+
+            Product[] rows = allProducts.toArray(new Product[0]);
+            for (Map.Entry<Integer, ? extends Product> entry : updatedProducts.entrySet()) {
+                Product product = entry.getValue();
+                product.setId(entry.getKey());
+
+                int index = productIds.get(entry.getKey());
+                Product oldProduct = rows[index];
+                rows[index] = product;
+                reindexProduct(index, oldProduct, product);
+            }
+            allProducts.setAll(rows);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a batch of Parts, by ID.
+     *
+     * This method removes every Part whose ID is given and keeps the remaining Parts in order. The new contents of
+     * allParts are published in one change. IDs that are not in Inventory are ignored, and as with deletePart, Parts
+     * that are associated with a Product are kept.
+     * @param partIdsToDelete The IDs of the Parts that will be removed
+     * @return Returns the number of Parts removed
+     */
+    public static int deleteParts(Collection<Integer> partIdsToDelete) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            BitSet removed = new BitSet(allParts.size());
+            for (int partId : partIdsToDelete) {
+                int index = partIds.get(partId);
+                if (index >= 0 && !partUsage.isUsed(partId))
+                    removed.set(index);
+            }
+            if (removed.isEmpty())
+                return 0;
+
+            List<Part> kept = new ArrayList<>(allParts.size() - removed.cardinality());
+            partVersion++;
+            partRanges.catchUp();
+            deferRanges = isBulk(removed.cardinality());
+            partColumns.clear();
+            for (int i = 0; i < allParts.size(); i++) {
+                Part part = allParts.get(i);
+                if (removed.get(i)) {
+                    partIds.remove(part.getId());
+                    partNames.remove(part);
+                    valuation.removePart(part);
+                    if (!deferRanges)
+                        partRanges.remove(part);
+                    partsChanged(part.getId());
+                    publish(listener -> listener.partDeleted(part));
+                }
+                else {
+                    partIds.put(part.getId(), kept.size());
+                    partColumns.add(part);
+                    kept.add(part);
+                }
+            }
+            rebuildDeferredRanges();
+            allParts.setAll(kept);
+
+            return removed.cardinality();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a batch of Products, by ID.
+     *
+     * This method removes every Product whose ID is given and keeps the remaining Products in order. The new contents
+     * of allProducts are published in one change. IDs that are not in Inventory are ignored.
+     * @param productIdsToDelete The IDs of the Products that will be removed
+     * @return Returns the number of Products removed
+     */
+    public static int deleteProducts(Collection<Integer> productIdsToDelete) {
+        long stamp = lock.writeLock();
+        try {
+            checkWritable();
+            BitSet removed = new BitSet(allProducts.size());
+            for (int productId : productIdsToDelete) {
+                int index = productIds.get(productId);
+                if (index >= 0)
+                    removed.set(index);
+            }
+            if (removed.isEmpty())
+                return 0;
+
+            List<Product> kept = new ArrayList<>(allProducts.size() - removed.cardinality());
+            productVersion++;
+            for (int i = 0; i < allProducts.size(); i++) {
+                Product product = allProducts.get(i);
+                if (removed.get(i)) {
+                    productIds.remove(product.getId());
+                    productNames.remove(product);
+                    valuation.removeProduct(product);
+                    removeUsage(product);
+                    publish(listener -> listener.productDeleted(product));
+                }
+                else {
+                    productIds.put(product.getId(), kept.size());
+                    kept.add(product);
+                }
+            }
+            allProducts.setAll(kept);
+
+            return removed.cardinality();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Takes a consistent copy of Inventory.
+     *
+     * This method copies the lists of Parts and Products, their stock, and every Product's bill of materials while no
+     * change can happen.
+     * @return Returns the snapshot
+     */
+    public static InventorySnapshot snapshot() {
+        return snapshot(() -> 0);
+    }
+
+    /**
+     * Takes a consistent copy of Inventory, along with a value read at the same moment.
+     *
+     * This method copies the lists of Parts and Products, their stock, and every Product's bill of materials while no
+     * change can happen. The mark is read at that moment too, so for example a log's last LSN matches the snapshot
+     * exactly.
+     * @param mark Supplies a value to store with the snapshot
+     * @return Returns the snapshot
+     */
+    public static InventorySnapshot snapshot(LongSupplier mark) {
+        // The write lock also holds off stock adjustments, which change Parts and Products in place
+        long stamp = lock.writeLock();
+        try {
+            return copy(mark.getAsLong());
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // Copies the lists, stock and bills of materials. Called with the write lock held.
+    private static InventorySnapshot copy(long mark) {
+        int[] partStock = new int[allParts.size()];
+        for (int i = 0; i < partStock.length; i++)
+            partStock[i] = allParts.get(i).getStock();
+
+        int[] productStock = new int[allProducts.size()];
+        // Bills of materials are never changed once published, so they are shared rather than copied
+        BillOfMaterials[] boms = new BillOfMaterials[allProducts.size()];
+        for (int i = 0; i < boms.length; i++) {
+            Product product = allProducts.get(i);
+            productStock[i] = product.getStock();
+            boms[i] = product.getBillOfMaterials();
+        }
+
+        return new InventorySnapshot(List.copyOf(allParts), List.copyOf(allProducts), partStock, productStock, boms,
+                partSequence.get(), productSequence.get(), mark);
+    }
+
+    /**
+     * Returns a page of the Parts.
+     *
+     * This method copies the Parts at positions offset to offset + limit - 1 of allParts while no change can happen,
+     * so it can be called from any thread.
+     * @param offset The position of the first Part on the page
+     * @param limit The largest number of Parts on the page
+     * @return Returns the Parts on the page, which is empty past the end of the list
+     */
+    public static List<Part> getPartsPage(int offset, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int from = Math.min(Math.max(offset, 0), allParts.size());
+            int to = (int) Math.min((long) from + Math.max(limit, 0), allParts.size());
+            return List.copyOf(allParts.subList(from, to));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a page of the Products.
+     *
+     * This method copies the Products at positions offset to offset + limit - 1 of allProducts while no change can
+     * happen, so it can be called from any thread.
+     * @param offset The position of the first Product on the page
+     * @param limit The largest number of Products on the page
+     * @return Returns the Products on the page, which is empty past the end of the list
+     */
+    public static List<Product> getProductsPage(int offset, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int from = Math.min(Math.max(offset, 0), allProducts.size());
+            int to = (int) Math.min((long) from + Math.max(limit, 0), allProducts.size());
+            return List.copyOf(allProducts.subList(from, to));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of Parts.
+     *
+     * @return Returns the size of allParts
+     */
+    public static int getPartCount() {
+        long stamp = lock.readLock();
+        try {
+            return allParts.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of Products.
+     *
+     * @return Returns the size of allProducts
+     */
+    public static int getProductCount() {
+        long stamp = lock.readLock();
+        try {
+            return allProducts.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Compare-and-set loop shared by adjustPartStock and replayPartStock. Holds the read lock only.
+    private static boolean adjustPartStock(int partId, int delta, boolean checkBounds) {
+        long stamp = lock.readLock();
+        try {
+            checkWritable();
+            int index = partIds.get(partId);
+            if (index < 0)
+                return false;
+
+            Part part = allParts.get(index);
+            int stock;
+            long newStock;
+            do {
+                stock = part.getStock();
+                newStock = (long) stock + delta;
+                if (checkBounds && (newStock < part.getMin() || newStock > part.getMax()))
+                    return false;
+            } while (!part.compareAndSetStock(stock, (int) newStock));
+
+            partColumns.addStock(index, delta);
+            valuation.partStockAdjusted(part, delta);
+            notifyListeners(listener -> listener.partStockAdjusted(part, delta));
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Compare-and-set loop shared by adjustProductStock and replayProductStock. Holds the read lock only.
+    private static boolean adjustProductStock(int productId, int delta, boolean checkBounds) {
+        long stamp = lock.readLock();
+        try {
+            checkWritable();
+            int index = productIds.get(productId);
+            if (index < 0)
+                return false;
+
+            Product product = allProducts.get(index);
+            int stock;
+            long newStock;
+            do {
+                stock = product.getStock();
+                newStock = (long) stock + delta;
+                if (checkBounds && (newStock < product.getMin() || newStock > product.getMax()))
+                    return false;
+            } while (!product.compareAndSetStock(stock, (int) newStock));
+
+            valuation.productStockAdjusted(product, delta);
+            notifyListeners(listener -> listener.productStockAdjusted(product, delta));
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // The methods below change the lists and indexes. Callers must hold the write lock.
+
+    private static void insertPart(Part newPart) {
+        indexPart(newPart, allParts.size());
+        allParts.add(newPart);
+    }
+
+    private static void insertProduct(Product newProduct) {
+        indexProduct(newProduct, allProducts.size());
+        allProducts.add(newProduct);
+    }
+
+    private static void replacePartAt(int index, Part selectedPart) {
+        Part oldPart = allParts.set(index, selectedPart);
+        reindexPart(index, oldPart, selectedPart);
+    }
+
+    private static void replaceProductAt(int index, Product newProduct) {
+        Product oldProduct = allProducts.set(index, newProduct);
+        reindexProduct(index, oldProduct, newProduct);
+    }
+
+    // Swap-remove: the last Part moves into the freed position, so nothing else shifts
+    private static Part removePartAt(int index) {
+        int last = allParts.size() - 1;
+        Part removed = allParts.get(index);
+        partVersion++;
+        partRanges.catchUp();
+
+        if (index != last) {
+            Part moved = allParts.get(last);
+            allParts.set(index, moved);
+            partIds.put(moved.getId(), index);
+        }
+        allParts.remove(last);
+        partIds.remove(removed.getId());
+        partNames.remove(removed);
+        partColumns.swapRemove(index);
+        partRanges.remove(removed);
+        valuation.removePart(removed);
+        partsChanged(removed.getId());
+        publish(listener -> listener.partDeleted(removed));
+
+        return removed;
+    }
+
+    // Swap-remove: the last Product moves into the freed position, so nothing else shifts
+    private static Product removeProductAt(int index) {
+        int last = allProducts.size() - 1;
+        Product removed = allProducts.get(index);
+        productVersion++;
+
+        if (index != last) {
+            Product moved = allProducts.get(last);
+            allProducts.set(index, moved);
+            productIds.put(moved.getId(), index);
+        }
+        allProducts.remove(last);
+        productIds.remove(removed.getId());
+        productNames.remove(removed);
+        valuation.removeProduct(removed);
+        removeUsage(removed);
+        publish(listener -> listener.productDeleted(removed));
+
+        return removed;
+    }
+
+    // Adds a Part that will be placed at index to the indexes. The Part must go at the end of allParts.
+    private static void indexPart(Part newPart, int index) {
+        partVersion++;
+        advance(partSequence, newPart.getId());
+        partIds.put(newPart.getId(), index);
+        partNames.add(newPart, newPart.getName());
+        partColumns.add(newPart);
+        if (!deferRanges)
+            partRanges.add(newPart);
+        valuation.addPart(newPart);
+        partsChanged(newPart.getId());
+        publish(listener -> listener.partAdded(newPart));
+    }
+
+    // Adds a Product that will be placed at index to the indexes
+    private static void indexProduct(Product newProduct, int index) {
+        productVersion++;
+        advance(productSequence, newProduct.getId());
+        productIds.put(newProduct.getId(), index);
+        productNames.add(newProduct, newProduct.getName());
+        valuation.addProduct(newProduct);
+        addUsage(newProduct);
+        // Parts the Product looked up before it was added may have changed since without it hearing about it
+        newProduct.partsChanged();
+        publish(listener -> listener.productAdded(newProduct));
+    }
+
+    // Updates the indexes after oldPart was replaced by selectedPart at index
+    private static void reindexPart(int index, Part oldPart, Part selectedPart) {
+        partVersion++;
+        partRanges.catchUp();
+        if (oldPart.getId() != selectedPart.getId())
+            partIds.remove(oldPart.getId());
+        advance(partSequence, selectedPart.getId());
+        partIds.put(selectedPart.getId(), index);
+        partNames.remove(oldPart);
+        partNames.add(selectedPart, selectedPart.getName());
+        partColumns.set(index, selectedPart);
+        if (!deferRanges) {
+            partRanges.remove(oldPart);
+            partRanges.add(selectedPart);
+        }
+        valuation.removePart(oldPart);
+        valuation.addPart(selectedPart);
+
+        // Products find the new Part through the ID index; only a change of ID has to be written into them
+        if (oldPart.getId() != selectedPart.getId()) {
+            for (int productId : partUsage.productsUsing(oldPart.getId())) {
+                Product product = productAt(productIds.get(productId));
+                removeUsage(product);
+                product.associatedPartRenamed(oldPart.getId(), selectedPart.getId());
+                addUsage(product);
+                publish(listener -> listener.associatedPartsChanged(product));
+            }
+        }
+        partsChanged(selectedPart.getId());
+
+        publish(listener -> listener.partUpdated(oldPart, selectedPart));
+    }
+
+    // Updates the indexes after oldProduct was replaced by newProduct at index
+    private static void reindexProduct(int index, Product oldProduct, Product newProduct) {
+        productVersion++;
+        if (oldProduct.getId() != newProduct.getId())
+            productIds.remove(oldProduct.getId());
+        advance(productSequence, newProduct.getId());
+        productIds.put(newProduct.getId(), index);
+        productNames.remove(oldProduct);
+        productNames.add(newProduct, newProduct.getName());
+        valuation.removeProduct(oldProduct);
+        valuation.addProduct(newProduct);
+        removeUsage(oldProduct);
+        addUsage(newProduct);
+        publish(listener -> listener.productUpdated(oldProduct, newProduct));
+    }
+
+    // Whether a bulk change of this many Parts should rebuild partRanges rather than update it Part by Part
+    private static boolean isBulk(int count) {
+        return count >= 64 && count * 16L >= allParts.size();
+    }
+
+    private static void rebuildDeferredRanges() {
+        if (deferRanges) {
+            deferRanges = false;
+            partRanges.rebuild();
+        }
+    }
+
+    // Rejects a Part or Product that the forms would not accept
+    private static void checkFields(String type, int id, String name, int stock, int min, int max) {
+        if (name == null || name.isBlank())
+            throw new IllegalArgumentException(type + " " + id + ": Name field must contain data.");
+
+        String errorMessage = ErrorAlerts.rangeValidation(stock, max, min);
+        if (!errorMessage.isEmpty())
+            throw new IllegalArgumentException(type + " " + id + ": " + errorMessage.trim().replace('\n', ' '));
+    }
+
+    /*
+     * Rejects text that could not be stored, so a listener such as a journal never fails on a change already made,
+     * and a price that is not finite or is negative, which no total or export could use.
+     */
+    private static void checkValues(Part part, int id) {
+        checkLength("Part", id, "Name", part.getName());
+        if (part instanceof Outsourced)
+            checkLength("Part", id, "Company name", ((Outsourced) part).getCompanyName());
+        checkPrice("Part", id, part.getPrice());
+    }
+
+    private static void checkValues(Product product, int id) {
+        checkLength("Product", id, "Name", product.getName());
+        checkPrice("Product", id, product.getPrice());
+    }
+
+    private static void checkPrice(String type, int id, double price) {
+        String errorMessage = ErrorAlerts.priceValidation(price);
+        if (!errorMessage.isEmpty())
+            throw new IllegalArgumentException(type + " " + id + ": " + errorMessage.trim());
+    }
+
+    private static void checkLength(String type, int id, String field, String text) {
+        if (text == null)
+            throw new IllegalArgumentException(type + " " + id + ": " + field + " field must contain data.");
+        if (text.length() > MAX_TEXT_LENGTH)
+            throw new IllegalArgumentException(type + " " + id + ": " + field + " must be at most " + MAX_TEXT_LENGTH
+                    + " characters.");
+    }
+
+    private static void addUsage(Product product) {
+        BillOfMaterials bom = product.getBillOfMaterials();
+        for (int i = 0; i < bom.size(); i++)
+            partUsage.add(bom.getPartId(i), product.getId(), bom.getQuantity(i));
+    }
+
+    private static void removeUsage(Product product) {
+        BillOfMaterials bom = product.getBillOfMaterials();
+        for (int i = 0; i < bom.size(); i++)
+            partUsage.remove(bom.getPartId(i), product.getId(), bom.getQuantity(i));
+    }
+
+    // Tells the Products that use the Part ID that the Part behind it changed
+    private static void partsChanged(int partId) {
+        for (int productId : partUsage.productsUsing(partId))
+            productAt(productIds.get(productId)).partsChanged();
+    }
+
+    // Called by Product when Parts are added to its bill of materials
+    static void associatedPartsAdded(Product product, int[] partIds, int[] quantities) {
+        long stamp = lock.writeLock();
+        try {
+            if (productAt(productIds.get(product.getId())) == product) {
+                for (int i = 0; i < partIds.length; i++)
+                    partUsage.add(partIds[i], product.getId(), quantities[i]);
+                publish(listener -> listener.associatedPartsChanged(product));
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // Called by Product when one of a Part is removed from its bill of materials
+    static void associatedPartRemoved(Product product, int partId) {
+        long stamp = lock.writeLock();
+        try {
+            if (productAt(productIds.get(product.getId())) == product) {
+                partUsage.remove(partId, product.getId(), 1);
+                publish(listener -> listener.associatedPartsChanged(product));
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    // Lets every listener refuse a change before anything is changed, such as a journal that can no longer write
+    static void checkWritable() {
+        for (InventoryListener listener : listeners)
+            listener.beforeChange();
+    }
+
+    // Queues a change for the listeners. Called with the write lock held.
+    private static void publish(Consumer<InventoryListener> event) {
+        events.add(event);
+    }
+
+    // Tells the listeners about the queued changes, once every list and index is up to date, and releases the lock
+    private static void unlockWrite(long stamp) {
+        RuntimeException failure = null;
+        try {
+            for (Consumer<InventoryListener> event : events) {
+                try {
+                    notifyListeners(event);
+                } catch (RuntimeException e) {
+                    if (failure == null)
+                        failure = e;
+                    else
+                        failure.addSuppressed(e);
+                }
+            }
+        } finally {
+            events.clear();
+            lock.unlockWrite(stamp);
+        }
+
+        try {
+            afterChange();
+        } catch (RuntimeException e) {
+            if (failure == null)
+                failure = e;
+            else
+                failure.addSuppressed(e);
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    // Lets every listener finish the change once the lock is released, such as a journal waiting for its fsync
+    private static void afterChange() {
+        notifyListeners(InventoryListener::afterChange);
+    }
+
+    // Tells every listener about a change. One listener failing does not keep the change from the others.
+    private static void notifyListeners(Consumer<InventoryListener> event) {
+        RuntimeException failure = null;
+        for (InventoryListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    // Parts for IDs read from an index while holding the lock
+    private static ObservableList<Part> partsWithIds(int[] ids) {
+        ObservableList<Part> parts = FXCollections.observableArrayList();
+        for (int id : ids)
+            parts.add(allParts.get(partIds.get(id)));
+        return parts;
+    }
+
+    // Returns the Part at index, or null if the index is -1 (not found)
+    private static Part partAt(int index) {
+        return index < 0 ? null : allParts.get(index);
+    }
+
+    // Returns the Product at index, or null if the index is -1 (not found)
+    private static Product productAt(int index) {
+        return index < 0 ? null : allProducts.get(index);
+    }
+
+    // Moves the sequence past usedId if it isn't already
+    private static void advance(AtomicInteger sequence, int usedId) {
+        if (usedId != Integer.MAX_VALUE)
+            sequence.accumulateAndGet(usedId + 1, Math::max);
     }
 
     /**
      * Getter for allParts.
      *
      * This method is the getter for the ObservableList allParts.
+     * The list should only be changed through the methods of Inventory so the indexes stay in sync.
      * @return Returns the list of Parts found in Inventory
      */
     public static ObservableList<Part> getAllParts() {
@@ -167,6 +1612,7 @@ public class Inventory {
      * Getter for allProducts.
      *
      * This method is the getter for the ObservableList allProducts.
+     * The list should only be changed through the methods of Inventory so the indexes stay in sync.
      * @return Returns the list of Products found in Inventory
      */
     public static ObservableList<Product> getAllProducts() {
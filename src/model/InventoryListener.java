@@ -0,0 +1,118 @@
+package model;
+
+/**
+ * Receives the changes made to Inventory.
+ *
+ * This interface is implemented by classes that need to follow every change to the Parts and Products in Inventory,
+ * such as a journal on disk. The methods are called in the order the changes are made, once the lists and indexes
+ * are up to date and while Inventory's write lock is still held, so a listener sees a consistent sequence of changes.
+ * A listener must return quickly and must not call back into Inventory. An exception thrown by a listener does not
+ * undo the change or keep it from the other listeners; it is passed on to the caller that made the change.
+ * Once the lock is released, afterChange is called on the thread that made the change, before that thread returns.
+ *
+ * <p> Stock adjustments are the exception: they hold only the read lock, so partStockAdjusted and productStockAdjusted
+ * can be called from several threads at once, and adjustments of the same item can arrive in a different order than
+ * they were applied. Adding up the deltas always gives the right total. </p>
+ */
+public interface InventoryListener {
+    /**
+     * Called before any change is made, while Inventory's lock is held.
+     *
+     * A listener that can no longer follow the changes, such as a journal whose file cannot be written, throws here
+     * so the change is refused and Inventory is left as it was. Stock adjustments call it too, from several threads
+     * at once.
+     * @throws IllegalStateException If the change must not be made
+     */
+    default void beforeChange() {
+    }
+
+    /**
+     * Called after a change is made, once Inventory's lock is released, on the thread that made it.
+     *
+     * A listener that needs the change to be finished before the caller goes on, such as a journal that must have it
+     * on disk before the change is acknowledged, waits here. Since the lock is no longer held, other threads can
+     * make their changes meanwhile, and a journal can write them all with one fsync. It is also called after calls
+     * that changed nothing, and must then return at once.
+     * @throws IllegalStateException If the change was made in memory but could not be finished, for example because
+     * the journal failed before writing it
+     */
+    default void afterChange() {
+    }
+
+    /**
+     * Called after a Part was added.
+     *
+     * @param part The new Part
+     */
+    default void partAdded(Part part) {
+    }
+
+    /**
+     * Called after a Part was replaced.
+     *
+     * @param oldPart The Part that was replaced
+     * @param newPart The Part that took its place
+     */
+    default void partUpdated(Part oldPart, Part newPart) {
+    }
+
+    /**
+     * Called after a Part was removed.
+     *
+     * @param part The removed Part
+     */
+    default void partDeleted(Part part) {
+    }
+
+    /**
+     * Called after a Product was added.
+     *
+     * @param product The new Product
+     */
+    default void productAdded(Product product) {
+    }
+
+    /**
+     * Called after a Product was replaced.
+     *
+     * @param oldProduct The Product that was replaced
+     * @param newProduct The Product that took its place
+     */
+    default void productUpdated(Product oldProduct, Product newProduct) {
+    }
+
+    /**
+     * Called after a Product was removed.
+     *
+     * @param product The removed Product
+     */
+    default void productDeleted(Product product) {
+    }
+
+    /**
+     * Called after a Part was associated with, or removed from, a Product in Inventory, or after a Part's ID
+     * changed and the Product's bill of materials was updated to the new ID.
+     *
+     * @param product The Product whose associated Parts changed
+     */
+    default void associatedPartsChanged(Product product) {
+    }
+
+    /**
+     * Called after the stock of a Part was adjusted in place.
+     *
+     * @param part The Part, which already has its new stock
+     * @param delta The change to the stock
+     */
+    default void partStockAdjusted(Part part, int delta) {
+    }
+
+    /**
+     * Called after the stock of a Product was adjusted in place.
+     *
+     * @param product The Product, which already has its new stock
+     * @param delta The change to the stock
+     */
+    default void productStockAdjusted(Product product, int delta) {
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import java.util.List;
+
+/**
+ * A consistent copy of the contents of Inventory at one moment.
+ *
+ * This class holds the Parts and Products that were in Inventory when it was taken, along with their stock and the bill
+ * of materials of each Product. It is taken under Inventory's lock and is not changed afterwards, so it can be
+ * written out or exported on another thread while Inventory keeps being edited.
+ */
+public class InventorySnapshot {
+    private final List<Part> parts;
+    private final List<Product> products;
+    private final int[] partStock;
+    private final int[] productStock;
+    private final BillOfMaterials[] boms;
+    private final int nextPartId;
+    private final int nextProductId;
+    private final long mark;
+
+    InventorySnapshot(List<Part> parts, List<Product> products, int[] partStock, int[] productStock,
+                      BillOfMaterials[] boms, int nextPartId, int nextProductId, long mark) {
+        this.parts = parts;
+        this.products = products;
+        this.partStock = partStock;
+        this.productStock = productStock;
+        this.boms = boms;
+        this.nextPartId = nextPartId;
+        this.nextProductId = nextProductId;
+        this.mark = mark;
+    }
+
+    /**
+     * Getter for parts.
+     *
+     * @return Returns an unmodifiable list of the Parts, in allParts order
+     */
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    /**
+     * Getter for products.
+     *
+     * @return Returns an unmodifiable list of the Products, in allProducts order
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Returns the stock of a Part in the snapshot.
+     *
+     * Stock adjustments change Parts in place, so this should be used rather than getStock() on the Part.
+     * @param index The position of the Part in getParts()
+     * @return Returns the Part's stock when the snapshot was taken
+     */
+    public int getPartStock(int index) {
+        return partStock[index];
+    }
+
+    /**
+     * Returns the stock of a Product in the snapshot.
+     *
+     * Stock adjustments change Products in place, so this should be used rather than getStock() on the Product.
+     * @param index The position of the Product in getProducts()
+     * @return Returns the Product's stock when the snapshot was taken
+     */
+    public int getProductStock(int index) {
+        return productStock[index];
+    }
+
+    /**
+     * Returns the bill of materials of a Product in the snapshot.
+     *
+     * @param index The position of the Product in getProducts()
+     * @return Returns the Product's bill of materials when the snapshot was taken
+     */
+    public BillOfMaterials getBillOfMaterials(int index) {
+        return boms[index];
+    }
+
+    /**
+     * Getter for nextPartId.
+     *
+     * @return Returns the next Part ID Inventory would have handed out when the snapshot was taken
+     */
+    public int getNextPartId() {
+        return nextPartId;
+    }
+
+    /**
+     * Getter for nextProductId.
+     *
+     * @return Returns the next Product ID Inventory would have handed out when the snapshot was taken
+     */
+    public int getNextProductId() {
+        return nextProductId;
+    }
+
+    /**
+     * Getter for mark.
+     *
+     * @return Returns the value the mark supplier gave when the snapshot was taken, such as a log's LSN
+     */
+    public long getMark() {
+        return mark;
+    }
+}
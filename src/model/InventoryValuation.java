@@ -0,0 +1,88 @@
+package model;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The value of the stock in Inventory at one moment.
+ *
+ * This class holds the value (stock times price) of the InHouse Parts, the Outsourced Parts, the Outsourced Parts of
+ * each supplier company and the Products. The values are counted in whole cents and returned in dollars.
+ */
+public class InventoryValuation {
+    private final long inHouseCents;
+    private final long outsourcedCents;
+    private final long productCents;
+    private final Map<String, Long> companyCents;
+
+    InventoryValuation(long inHouseCents, long outsourcedCents, long productCents, Map<String, Long> companyCents) {
+        this.inHouseCents = inHouseCents;
+        this.outsourcedCents = outsourcedCents;
+        this.productCents = productCents;
+        this.companyCents = Map.copyOf(companyCents);
+    }
+
+    /**
+     * Getter for the InHouse value.
+     *
+     * @return Returns the value of the InHouse Parts
+     */
+    public double getInHouseValue() {
+        return inHouseCents / 100.0;
+    }
+
+    /**
+     * Getter for the Outsourced value.
+     *
+     * @return Returns the value of the Outsourced Parts
+     */
+    public double getOutsourcedValue() {
+        return outsourcedCents / 100.0;
+    }
+
+    /**
+     * Getter for the Parts value.
+     *
+     * @return Returns the value of all Parts
+     */
+    public double getPartsValue() {
+        return (inHouseCents + outsourcedCents) / 100.0;
+    }
+
+    /**
+     * Getter for the Products value.
+     *
+     * @return Returns the value of all Products
+     */
+    public double getProductsValue() {
+        return productCents / 100.0;
+    }
+
+    /**
+     * Getter for the total value.
+     *
+     * @return Returns the value of all Parts and Products
+     */
+    public double getTotalValue() {
+        return (inHouseCents + outsourcedCents + productCents) / 100.0;
+    }
+
+    /**
+     * Returns the value of one supplier's Parts.
+     *
+     * @param companyName The company name of the Outsourced Parts
+     * @return Returns the value of the company's Parts, or 0 if Inventory has none
+     */
+    public double getCompanyValue(String companyName) {
+        return companyCents.getOrDefault(companyName, 0L) / 100.0;
+    }
+
+    /**
+     * Returns the supplier companies that have Parts in Inventory.
+     *
+     * @return Returns an unmodifiable set of company names
+     */
+    public Set<String> getCompanyNames() {
+        return companyCents.keySet();
+    }
+}
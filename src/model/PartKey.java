@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * The Part fields that Inventory keeps sorted for range and top-K lookups.
+ */
+public enum PartKey {
+    /** The price. */
+    PRICE,
+    /** The stock. */
+    STOCK,
+    /**
+     * The stock divided by min. For Parts whose min is 0 or less it is negative infinity if the stock is below min and
+     * positive infinity otherwise.
+     */
+    STOCK_RATIO
+}
@@ -0,0 +1,115 @@
+package model;
+
+/**
+ * A search for Parts by several conditions at once.
+ *
+ * This class collects the conditions a Part must meet, all of which must hold, and is passed to Inventory.query. For
+ * example, new PartQuery().nameContains("bolt").companyName("Acme").priceBetween(5, 20) finds Acme's bolts priced
+ * from $5 to $20. A condition set twice keeps the last value.
+ */
+public class PartQuery {
+    String name;
+    byte kind = -1;
+    String companyName;
+    boolean hasMachineId;
+    int machineId;
+    boolean hasPrice;
+    double minPrice;
+    double maxPrice;
+    boolean hasStock;
+    int minStock;
+    int maxStock;
+    boolean belowMin;
+
+    /**
+     * Only matches Parts whose name contains the given String, ignoring case.
+     *
+     * @param name The String to be found in the names
+     * @return Returns this query
+     */
+    public PartQuery nameContains(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Only matches InHouse Parts.
+     *
+     * @return Returns this query
+     */
+    public PartQuery inHouse() {
+        kind = PartColumns.IN_HOUSE;
+        return this;
+    }
+
+    /**
+     * Only matches Outsourced Parts.
+     *
+     * @return Returns this query
+     */
+    public PartQuery outsourced() {
+        kind = PartColumns.OUTSOURCED;
+        return this;
+    }
+
+    /**
+     * Only matches Outsourced Parts from the given company.
+     *
+     * @param companyName The company name, compared exactly
+     * @return Returns this query
+     */
+    public PartQuery companyName(String companyName) {
+        this.companyName = companyName;
+        return outsourced();
+    }
+
+    /**
+     * Only matches InHouse Parts made on the given machine.
+     *
+     * @param machineId The machine ID
+     * @return Returns this query
+     */
+    public PartQuery machineId(int machineId) {
+        this.hasMachineId = true;
+        this.machineId = machineId;
+        return inHouse();
+    }
+
+    /**
+     * Only matches Parts whose price is in a range.
+     *
+     * @param minPrice The lowest price, inclusive
+     * @param maxPrice The highest price, inclusive
+     * @return Returns this query
+     */
+    public PartQuery priceBetween(double minPrice, double maxPrice) {
+        this.hasPrice = true;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        return this;
+    }
+
+    /**
+     * Only matches Parts whose stock is in a range.
+     *
+     * @param minStock The lowest stock, inclusive
+     * @param maxStock The highest stock, inclusive
+     * @return Returns this query
+     */
+    public PartQuery stockBetween(int minStock, int maxStock) {
+        this.hasStock = true;
+        this.minStock = minStock;
+        this.maxStock = maxStock;
+        return this;
+    }
+
+    /**
+     * Only matches Parts whose stock is below their min.
+     *
+     * @return Returns this query
+     */
+    public PartQuery belowMin() {
+        this.belowMin = true;
+        return this;
+    }
+}
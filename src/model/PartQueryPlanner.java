@@ -0,0 +1,200 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the rows of PartColumns that match a PartQuery.
+ *
+ * This class estimates how many rows each indexed condition (name, price, stock and below min) allows, using the
+ * posting lists of the name index and the counts of the sorted indexes, and starts from the most selective one. The
+ * next conditions are intersected as RowSets while reading their index is cheaper than checking each remaining row,
+ * and the rest, together with the type, company and machine conditions, are checked against the columns of the
+ * remaining rows. Part objects are only looked at for the final result. Without any indexed condition, the columns
+ * are scanned.
+ *
+ * <p> The caller must hold Inventory's read lock. The stock indexes are read through PartRanges, which only takes its
+ * monitor for each read, so stock adjustments are not held up while the rest of the plan runs. </p>
+ */
+class PartQueryPlanner {
+    private static final int NAME = 1;
+    private static final int PRICE = 2;
+    private static final int STOCK = 4;
+    private static final int BELOW_MIN = 8;
+
+    // Rough cost of checking a condition against one row, relative to reading one index entry
+    private static final int NAME_CHECK_COST = 16;
+    private static final int COLUMN_CHECK_COST = 1;
+
+    private final PartQuery query;
+    private final NameIndex<Part> names;
+    private final PartRanges ranges;
+    private final PartColumns columns;
+    private final IdIndex ids;
+
+    private final String foldedName;
+    private final int companyCode;
+
+    PartQueryPlanner(PartQuery query, NameIndex<Part> names, PartRanges ranges, PartColumns columns, IdIndex ids) {
+        this.query = query;
+        this.names = names;
+        this.ranges = ranges;
+        this.columns = columns;
+        this.ids = ids;
+        this.foldedName = query.name == null || query.name.isEmpty() ? null : query.name.toLowerCase();
+        this.companyCode = query.companyName == null ? -1 : columns.companyCode(query.companyName);
+    }
+
+    /**
+     * Finds the matching rows.
+     *
+     * @return Returns the positions in allParts of the matching Parts, in ascending order
+     */
+    int[] rows() {
+        if (query.companyName != null && companyCode < 0)
+            return new int[0];
+
+        // Indexed conditions and their estimated number of rows, most selective first
+        int[] conditions = new int[4];
+        long[] estimates = new long[4];
+        int count = 0;
+        if (foldedName != null) {
+            conditions[count] = NAME;
+            estimates[count++] = names.estimate(foldedName);
+        }
+        if (query.hasPrice) {
+            conditions[count] = PRICE;
+            estimates[count++] = ranges.count(PartKey.PRICE, lowKey(PRICE), highKey(PRICE));
+        }
+        if (query.hasStock) {
+            conditions[count] = STOCK;
+            estimates[count++] = ranges.count(PartKey.STOCK, lowKey(STOCK), highKey(STOCK));
+        }
+        if (query.belowMin) {
+            conditions[count] = BELOW_MIN;
+            estimates[count++] = ranges.count(PartKey.STOCK_RATIO, lowKey(BELOW_MIN), highKey(BELOW_MIN));
+        }
+        sortByEstimate(conditions, estimates, count);
+
+        if (count == 0)
+            return filter(null, 0);
+        if (estimates[0] == 0)
+            return new int[0];
+
+        RowSet candidates = lookup(conditions[0]);
+        int applied = conditions[0];
+        for (int i = 1; i < count && candidates.size() > 0; i++) {
+            int checkCost = conditions[i] == NAME ? NAME_CHECK_COST : COLUMN_CHECK_COST;
+            if (estimates[i] < (long) candidates.size() * checkCost) {
+                candidates = candidates.and(lookup(conditions[i]));
+                applied |= conditions[i];
+            }
+        }
+
+        return filter(candidates.toArray(), applied);
+    }
+
+    // The rows allowed by one indexed condition
+    private RowSet lookup(int condition) {
+        int[] rows;
+        int count = 0;
+        if (condition == NAME) {
+            List<Part> matches = names.search(foldedName);
+            rows = new int[matches.size()];
+            for (Part part : matches)
+                rows[count++] = ids.get(part.getId());
+        }
+        else {
+            int[] partIds = ranges.range(rangeKey(condition), lowKey(condition), highKey(condition));
+            rows = new int[partIds.length];
+            for (int partId : partIds)
+                rows[count++] = ids.get(partId);
+        }
+        return RowSet.of(rows, count);
+    }
+
+    // Keeps the candidate rows, or every row if there are none, that meet the conditions not yet applied
+    private int[] filter(int[] candidates, int applied) {
+        int total = candidates == null ? columns.size() : candidates.length;
+        int[] rows = new int[Math.min(total, 1024)];
+        int count = 0;
+
+        for (int i = 0; i < total; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (matches(row, applied)) {
+                if (count == rows.length)
+                    rows = Arrays.copyOf(rows, count * 2);
+                rows[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    private boolean matches(int row, int applied) {
+        if (query.kind >= 0 && columns.kindAt(row) != query.kind)
+            return false;
+        if (companyCode >= 0 && columns.companyCodeAt(row) != companyCode)
+            return false;
+        if (query.hasMachineId && columns.machineIdAt(row) != query.machineId)
+            return false;
+        if ((applied & PRICE) == 0 && query.hasPrice && !inRange(PRICE, columns.priceCentsAt(row)))
+            return false;
+        if ((applied & STOCK) == 0 && query.hasStock && !inRange(STOCK, columns.stockAt(row)))
+            return false;
+        if ((applied & BELOW_MIN) == 0 && query.belowMin && columns.stockAt(row) >= columns.minAt(row))
+            return false;
+        return (applied & NAME) != 0 || foldedName == null || columns.nameAt(row).toLowerCase().contains(foldedName);
+    }
+
+    private boolean inRange(int condition, long key) {
+        return key >= lowKey(condition) && key <= highKey(condition);
+    }
+
+    private static PartKey rangeKey(int condition) {
+        switch (condition) {
+            case PRICE:
+                return PartKey.PRICE;
+            case STOCK:
+                return PartKey.STOCK;
+            default:
+                return PartKey.STOCK_RATIO;
+        }
+    }
+
+    private long lowKey(int condition) {
+        switch (condition) {
+            case PRICE:
+                return PartRanges.lowKey(PartKey.PRICE, query.minPrice);
+            case STOCK:
+                return query.minStock;
+            default:
+                return SortedIndex.doubleKey(Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    private long highKey(int condition) {
+        switch (condition) {
+            case PRICE:
+                return PartRanges.highKey(PartKey.PRICE, query.maxPrice);
+            case STOCK:
+                return query.maxStock;
+            default:
+                // Stock below min is a stock/min ratio below 1
+                return SortedIndex.doubleKey(Math.nextDown(1.0));
+        }
+    }
+
+    private static void sortByEstimate(int[] conditions, long[] estimates, int count) {
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && estimates[j] < estimates[j - 1]; j--) {
+                long estimate = estimates[j];
+                estimates[j] = estimates[j - 1];
+                estimates[j - 1] = estimate;
+                int condition = conditions[j];
+                conditions[j] = conditions[j - 1];
+                conditions[j - 1] = condition;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package model;
+
+/**
+ * Sorted indexes over the Parts in Inventory.
+ *
+ * This class keeps a SortedIndex of Part IDs for each PartKey. Inventory changes them along with its other indexes,
+ * under the write lock.
+ *
+ * <p> Stock adjustments only hold the read lock and do not touch the stock indexes: PartColumns marks the adjusted
+ * rows, and the stock and stock/min indexes catch up with the marked rows when they are next read or changed. The
+ * catching up, and every read of those two indexes, synchronizes on this object, so adjustments never wait for each
+ * other or for a lookup. The price index only changes under the write lock and is read without the monitor. </p>
+ */
+class PartRanges {
+    private final SortedIndex price = new SortedIndex();
+    private final SortedIndex stock = new SortedIndex();
+    private final SortedIndex stockRatio = new SortedIndex();
+
+    private final PartColumns columns;
+
+    PartRanges(PartColumns columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Adds a Part that joined Inventory.
+     *
+     * @param part The Part added
+     */
+    void add(Part part) {
+        price.add(PartColumns.toCents(part.getPrice()), part.getId());
+        stock.add(part.getStock(), part.getId());
+        stockRatio.add(ratioKey(part.getStock(), part.getMin()), part.getId());
+    }
+
+    /**
+     * Removes a Part that left Inventory.
+     *
+     * @param part The Part removed, with the stock it had in Inventory
+     */
+    void remove(Part part) {
+        price.remove(PartColumns.toCents(part.getPrice()), part.getId());
+        stock.remove(part.getStock(), part.getId());
+        stockRatio.remove(ratioKey(part.getStock(), part.getMin()), part.getId());
+    }
+
+    /**
+     * Moves the Parts whose stock was adjusted since the last call to their current stock.
+     *
+     * This method is called before the stock indexes are read, and by Inventory under the write lock before rows are
+     * moved or Parts removed, so the marked rows still refer to the Parts that were adjusted.
+     */
+    synchronized void catchUp() {
+        for (int row = columns.pollStockChange(); row >= 0; row = columns.pollStockChange()) {
+            if (row >= columns.size())
+                continue;
+
+            int oldStock = columns.indexedStockAt(row);
+            int newStock = columns.stockAt(row);
+            if (oldStock != newStock) {
+                int id = columns.idAt(row);
+                int min = columns.minAt(row);
+                stock.move(oldStock, newStock, id);
+                stockRatio.move(ratioKey(oldStock, min), ratioKey(newStock, min), id);
+                columns.setIndexedStock(row, newStock);
+            }
+        }
+    }
+
+    /**
+     * Replaces every entry with the rows of the columns.
+     */
+    void rebuild() {
+        int count = columns.size();
+        int[] ids = new int[count];
+        long[] keys = new long[count];
+        for (int row = 0; row < count; row++)
+            ids[row] = columns.idAt(row);
+
+        for (int row = 0; row < count; row++)
+            keys[row] = columns.priceCentsAt(row);
+        price.rebuild(keys, ids, count);
+        for (int row = 0; row < count; row++) {
+            keys[row] = columns.stockAt(row);
+            columns.setIndexedStock(row, (int) keys[row]);
+        }
+        stock.rebuild(keys, ids, count);
+        for (int row = 0; row < count; row++)
+            keys[row] = ratioKey(columns.indexedStockAt(row), columns.minAt(row));
+        stockRatio.rebuild(keys, ids, count);
+    }
+
+    /**
+     * Counts the Parts with a key in a range.
+     *
+     * @param key The field the index is sorted on
+     * @param low The lowest key, inclusive
+     * @param high The highest key, inclusive
+     * @return Returns the number of Parts
+     */
+    int count(PartKey key, long low, long high) {
+        if (key == PartKey.PRICE)
+            return price.count(low, high);
+        synchronized (this) {
+            catchUp();
+            return get(key).count(low, high);
+        }
+    }
+
+    /**
+     * Lists the Parts with a key in a range.
+     *
+     * @param key The field the index is sorted on
+     * @param low The lowest key, inclusive
+     * @param high The highest key, inclusive
+     * @return Returns the IDs of the Parts, in ascending order of the key
+     */
+    int[] range(PartKey key, long low, long high) {
+        if (key == PartKey.PRICE)
+            return price.range(low, high);
+        synchronized (this) {
+            catchUp();
+            return get(key).range(low, high);
+        }
+    }
+
+    /**
+     * Lists the Parts with the lowest keys.
+     *
+     * @param key The field the index is sorted on
+     * @param count The largest number of Parts
+     * @return Returns the IDs of up to count Parts, lowest first
+     */
+    int[] lowest(PartKey key, int count) {
+        if (key == PartKey.PRICE)
+            return price.lowest(count);
+        synchronized (this) {
+            catchUp();
+            return get(key).lowest(count);
+        }
+    }
+
+    /**
+     * Lists the Parts with the highest keys.
+     *
+     * @param key The field the index is sorted on
+     * @param count The largest number of Parts
+     * @return Returns the IDs of up to count Parts, highest first
+     */
+    int[] highest(PartKey key, int count) {
+        if (key == PartKey.PRICE)
+            return price.highest(count);
+        synchronized (this) {
+            catchUp();
+            return get(key).highest(count);
+        }
+    }
+
+    private SortedIndex get(PartKey key) {
+        switch (key) {
+            case PRICE:
+                return price;
+            case STOCK:
+                return stock;
+            default:
+                return stockRatio;
+        }
+    }
+
+    /**
+     * Turns the bounds of a lookup into the lowest key of an index.
+     *
+     * @param key The field the index is sorted on
+     * @param low The smallest value, in dollars for the price
+     * @return Returns the smallest key in the range
+     */
+    static long lowKey(PartKey key, double low) {
+        switch (key) {
+            case PRICE:
+                return PartColumns.toCents(low);
+            case STOCK:
+                return (long) Math.ceil(low);
+            default:
+                return SortedIndex.doubleKey(low);
+        }
+    }
+
+    /**
+     * Turns the bounds of a lookup into the highest key of an index.
+     *
+     * @param key The field the index is sorted on
+     * @param high The largest value, in dollars for the price
+     * @return Returns the largest key in the range
+     */
+    static long highKey(PartKey key, double high) {
+        switch (key) {
+            case PRICE:
+                return PartColumns.toCents(high);
+            case STOCK:
+                return (long) Math.floor(high);
+            default:
+                return SortedIndex.doubleKey(high);
+        }
+    }
+
+    // Below 1 exactly when the stock is below min, even for a min of 0 or less
+    private static long ratioKey(int stock, int min) {
+        if (min > 0)
+            return SortedIndex.doubleKey((double) stock / min);
+        return SortedIndex.doubleKey(stock < min ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+    }
+}
@@ -3,26 +3,54 @@ package model;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Class for a Product that can have associated Parts.
  *
  * This class defines a Product that the inventory management system can store.
- * A Product can have associated Parts which are stored in an ObservableList.
+ * A Product can have associated Parts which are stored as a BillOfMaterials of Part IDs and quantities.
+ *
+ * <p> The bill of materials is copy-on-write: every change publishes a new one, so readers on any thread share the
+ * current one without locking or copying. The Parts themselves are looked up through Inventory's ID index, so a Part
+ * updated through Inventory is seen by every Product that uses it. </p>
  */
 public class Product {
-    private ObservableList<Part> associatedParts;
+    // The current bill of materials, replaced as a whole by every change
+    private volatile BillOfMaterials bom = BillOfMaterials.EMPTY;
     private int id;
     private String name;
     private double price;
-    private int stock;
+    private volatile int stock;
     private int min;
     private int max;
 
+    // Cached material cost and list of Parts, valid while partsVersion still equals the version they were made at
+    private volatile CachedCost cachedCost;
+    private volatile CachedParts cachedParts;
+    private final AtomicInteger partsVersion = new AtomicInteger();
+
+    // Lets Inventory change the stock with compare-and-set
+    private static final VarHandle STOCK;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(Product.class, "stock", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      * Constructor for Product.
      *
      * This is the constructor for the Product class.
-     * associatedParts is the ObservableList of Parts that are associated with the Product.
+     * The Product starts with an empty bill of materials.
      * @param id The ID of the Product
      * @param name The name of the Product
      * @param price The price of the Product
@@ -37,8 +65,25 @@ public class Product {
         this.stock = stock;
         this.min = min;
         this.max = max;
+    }
 
-        associatedParts = FXCollections.observableArrayList();
+    /**
+     * Constructor for Product.
+     *
+     * This is the constructor for a Product that starts with a bill of materials, for example one read from a file.
+     * The Product is not in Inventory yet, so Inventory is not locked; it records the Parts used when the Product is
+     * added.
+     * @param id The ID of the Product
+     * @param name The name of the Product
+     * @param price The price of the Product
+     * @param stock The number in inventory of the Product
+     * @param min The minimum number that should be in stock
+     * @param max The maximum number that can be in stock
+     * @param bom The bill of materials of the Product
+     */
+    public Product(int id, String name, double price, int stock, int min, int max, BillOfMaterials bom) {
+        this(id, name, price, stock, min, max);
+        this.bom = bom;
     }
 
     /**
@@ -161,41 +206,234 @@ public class Product {
         this.max = max;
     }
 
+    // Sets the stock only if it still has the expected value. Used by Inventory to apply stock adjustments.
+    boolean compareAndSetStock(int expected, int stock) {
+        return STOCK.compareAndSet(this, expected, stock);
+    }
+
     /**
      * Adds a Part to the associated parts list.
      *
-     * This method adds a Part to the ObservableList associatedParts, which contains a list of all Parts associated
-     * with the Product.
+     * This method adds one more of the Part to the Product's bill of materials, which lists each associated Part by ID
+     * along with the number needed.
      * @param part The Part to be added to the list
      */
     //Add a part to the associatedParts list
     public void addAssociatedPart(Part part) {
-        associatedParts.add(part);
+        addAssociatedPart(part, 1);
+    }
+
+    /**
+     * Adds several of a Part to the associated parts list.
+     *
+     * This method adds the quantity to the Part's entry in the bill of materials, or adds an entry at the end if the
+     * Part is not listed yet.
+     * @param part The Part to be added to the list
+     * @param quantity The number of the Part to add
+     * @throws IllegalArgumentException If the quantity is less than 1
+     */
+    public void addAssociatedPart(Part part, int quantity) {
+        if (quantity < 1)
+            throw new IllegalArgumentException("Quantity must be at least 1.");
+
+        addAssociatedParts(new int[] {part.getId()}, new int[] {quantity});
+    }
+
+    /**
+     * Adds several Parts to the associated parts list.
+     *
+     * This method adds one of each Part, in the given order, with a single copy of the bill of materials, so filling
+     * a large bill of materials does not copy it once per Part.
+     * @param parts The Parts to be added to the list
+     */
+    public void addAssociatedParts(Collection<? extends Part> parts) {
+        if (parts.isEmpty())
+            return;
+
+        int[] partIds = new int[parts.size()];
+        int n = 0;
+        for (Part part : parts)
+            partIds[n++] = part.getId();
+        int[] quantities = new int[partIds.length];
+        Arrays.fill(quantities, 1);
+        addAssociatedParts(partIds, quantities);
+    }
+
+    /**
+     * Adds the Parts of a bill of materials to the associated parts list.
+     *
+     * This method adds every entry with its quantity, for example to copy the Parts of another Product.
+     * @param parts The bill of materials to be added
+     */
+    public void addAssociatedParts(BillOfMaterials parts) {
+        if (parts.size() > 0)
+            addAssociatedParts(parts.partIds, parts.quantities);
+    }
+
+    private void addAssociatedParts(int[] partIds, int[] quantities) {
+        Inventory.checkWritable();
+        synchronized (this) {
+            bom = bom.plus(partIds, quantities);
+        }
+
+        partsChanged();
+        Inventory.associatedPartsAdded(this, partIds, quantities);
     }
 
     /**
      * Deletes a Part from the associated parts list.
      *
-     * This method deletes a Part from the ObservableList associatedParts, which contains a list of all Parts
-     * associated with the Product.
+     * This method removes one of the Part, found by ID, from the bill of materials. The entry is removed once its
+     * quantity reaches 0.
      * @param selectedAssociatedPart The Part to be deleted from the list
      * @return Returns true if the Part was found and deleted. (The list changed as a result of the call.)
      */
     public boolean deleteAssociatedPart(Part selectedAssociatedPart) {
-        return associatedParts.remove(selectedAssociatedPart);
+        int partId = selectedAssociatedPart.getId();
+        Inventory.checkWritable();
+        synchronized (this) {
+            BillOfMaterials newBom = bom.minusOne(partId);
+            if (newBom == null)
+                return false;
+            bom = newBom;
+        }
+
+        partsChanged();
+        Inventory.associatedPartRemoved(this, partId);
+        return true;
+    }
+
+    /**
+     * Returns the bill of materials.
+     *
+     * This method returns the associated Parts as distinct IDs with a quantity each. It does not look anything up, so
+     * unlike getAllAssociatedParts it is safe to call from an InventoryListener.
+     * @return Returns the current bill of materials, which later changes to the Product do not affect
+     */
+    public BillOfMaterials getBillOfMaterials() {
+        return bom;
+    }
+
+    // Lists the Part under its new ID. Used by Inventory when a Part is replaced by one with another ID.
+    void associatedPartRenamed(int oldId, int newId) {
+        synchronized (this) {
+            bom = bom.renamed(oldId, newId);
+        }
+        partsChanged();
+    }
+
+    // Makes the next getMaterialCost() and getAllAssociatedParts() look the Parts up again. Used by Inventory when an
+    // associated Part is added, replaced or deleted.
+    void partsChanged() {
+        partsVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the material cost of the Product.
+     *
+     * This method returns the sum of the prices of the associated Parts, times the quantity of each, using the Parts
+     * currently in Inventory; Parts no longer in Inventory count as 0. The sum is added up in whole cents the first
+     * time it is asked for and cached until the bill of materials changes or one of its Parts is added, updated or
+     * deleted through Inventory, so repeated reads, such as a table column being redrawn, cost nothing. Changing a
+     * Part's price with setPrice, outside Inventory, is not noticed.
+     * @return Returns the total price of the associated Parts
+     */
+    public double getMaterialCost() {
+        return materialCostCents() / 100.0;
+    }
+
+    /**
+     * Returns the margin of the Product.
+     *
+     * This method returns the price of the Product minus its material cost, using the cached material cost.
+     * @return Returns the margin per Product
+     */
+    public double getMargin() {
+        return (PartColumns.toCents(price) - materialCostCents()) / 100.0;
+    }
+
+    private long materialCostCents() {
+        int version = partsVersion.get();
+        CachedCost cost = cachedCost;
+        if (cost == null || cost.version != version) {
+            BillOfMaterials current = bom;
+            Part[] parts = Inventory.lookupParts(current.partIds);
+            long cents = 0;
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] != null)
+                    cents += PartColumns.toCents(parts[i].getPrice()) * current.quantities[i];
+            }
+
+            // If the Parts change meanwhile, the version moves on and this result is never used
+            cost = new CachedCost(version, cents);
+            cachedCost = cost;
+        }
+
+        return cost.cents;
+    }
+
+    private static class CachedCost {
+        final int version;
+        final long cents;
+
+        CachedCost(int version, long cents) {
+            this.version = version;
+            this.cents = cents;
+        }
     }
 
     /**
      * Returns a list of all Parts associated with the Product.
      *
-     * This method returns an ObservableList of all Parts associated with the Product.
-     * It returns a new copy of associatedParts.
-     * @return Returns a new ObservableList that matches the associatedParts list.
+     * This method looks the bill of materials up in Inventory and lists each Part as many times as its quantity,
+     * skipping Parts no longer in Inventory. The read-only list is cached and shared by every caller until the bill
+     * of materials or one of its Parts changes, so repeated calls allocate nothing, and a later change does not affect
+     * a list already returned. To edit the list, copy it and use addAssociatedPart and deleteAssociatedPart.
+     *
+     * <p> Since it takes Inventory's read lock, this method must not be called from an InventoryListener; use
+     * getBillOfMaterials there. </p>
+     * @return Returns an unmodifiable ObservableList of the associated Parts
      */
     public ObservableList<Part> getAllAssociatedParts() {
-        ObservableList<Part> copyAssociatedParts = FXCollections.observableArrayList();
-        copyAssociatedParts.addAll(associatedParts);
+        int version = partsVersion.get();
+        CachedParts cached = cachedParts;
+        if (cached == null || cached.version != version) {
+            BillOfMaterials current = bom;
+            Part[] parts = Inventory.lookupParts(current.partIds);
+            Part[] units = new Part[current.getTotalQuantity()];
+            int n = 0;
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] != null) {
+                    Arrays.fill(units, n, n + current.quantities[i], parts[i]);
+                    n += current.quantities[i];
+                }
+            }
+
+            List<Part> list = Arrays.asList(n == units.length ? units : Arrays.copyOf(units, n));
+            cached = new CachedParts(version,
+                    FXCollections.unmodifiableObservableList(FXCollections.observableList(list)));
+            cachedParts = cached;
+        }
+
+        return cached.view;
+    }
+
+    /**
+     * Returns the number of associated Parts.
+     *
+     * @return Returns the number of Parts in the bill of materials, counting each quantity
+     */
+    public int getAssociatedPartCount() {
+        return bom.getTotalQuantity();
+    }
+
+    private static class CachedParts {
+        final int version;
+        final ObservableList<Part> view;
 
-        return copyAssociatedParts;
+        CachedParts(int version, ObservableList<Part> view) {
+            this.version = version;
+            this.view = view;
+        }
     }
 }
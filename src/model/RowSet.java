@@ -0,0 +1,217 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of row positions, in the style of a roaring bitmap.
+ *
+ * This class splits the rows into chunks of 65536 and stores each non-empty chunk either as a sorted array of the low
+ * 16 bits of its rows, when it holds few of them, or as a 1024-word bitmap. Sets built from different indexes can
+ * then be intersected chunk by chunk, merging arrays, probing bitmaps or ANDing words, at a cost in proportion to the
+ * smaller set rather than to the number of rows.
+ */
+class RowSet {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    // High 16 bits of the rows of each chunk, ascending
+    private final int[] chunks;
+    // char[] of sorted low bits, or long[] bitmap, for each chunk
+    private final Object[] containers;
+    private final int[] counts;
+    private final int cardinality;
+
+    private RowSet(int[] chunks, Object[] containers, int[] counts, int size) {
+        int total = 0;
+        for (int i = 0; i < size; i++)
+            total += counts[i];
+
+        this.chunks = Arrays.copyOf(chunks, size);
+        this.containers = Arrays.copyOf(containers, size);
+        this.counts = Arrays.copyOf(counts, size);
+        this.cardinality = total;
+    }
+
+    /**
+     * Builds a set from row positions.
+     *
+     * @param rows The rows, in any order and without repeats; the array is sorted in place
+     * @param count The number of rows in the array
+     * @return Returns the set
+     */
+    static RowSet of(int[] rows, int count) {
+        Arrays.sort(rows, 0, count);
+
+        int[] chunks = new int[16];
+        Object[] containers = new Object[16];
+        int[] counts = new int[16];
+        int size = 0;
+
+        for (int start = 0; start < count; ) {
+            int chunk = rows[start] >>> 16;
+            int end = start;
+            while (end < count && rows[end] >>> 16 == chunk)
+                end++;
+
+            if (size == chunks.length) {
+                chunks = Arrays.copyOf(chunks, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            chunks[size] = chunk;
+            counts[size] = end - start;
+            if (end - start > ARRAY_LIMIT) {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int i = start; i < end; i++)
+                    bitmap[(rows[i] & 0xFFFF) >>> 6] |= 1L << rows[i];
+                containers[size++] = bitmap;
+            }
+            else {
+                char[] low = new char[end - start];
+                for (int i = start; i < end; i++)
+                    low[i - start] = (char) rows[i];
+                containers[size++] = low;
+            }
+            start = end;
+        }
+
+        return new RowSet(chunks, containers, counts, size);
+    }
+
+    /**
+     * Returns the number of rows in the set.
+     *
+     * @return Returns the cardinality
+     */
+    int size() {
+        return cardinality;
+    }
+
+    /**
+     * Finds the rows in both sets.
+     *
+     * @param other The other set
+     * @return Returns a new set with the rows that are in this set and the other one
+     */
+    RowSet and(RowSet other) {
+        int capacity = Math.min(chunks.length, other.chunks.length);
+        int[] resultChunks = new int[capacity];
+        Object[] resultContainers = new Object[capacity];
+        int[] resultCounts = new int[capacity];
+        int size = 0;
+
+        for (int i = 0, j = 0; i < chunks.length && j < other.chunks.length; ) {
+            if (chunks[i] < other.chunks[j]) {
+                i++;
+            }
+            else if (chunks[i] > other.chunks[j]) {
+                j++;
+            }
+            else {
+                Object container = and(containers[i], other.containers[j]);
+                int count = count(container);
+                if (count > 0) {
+                    resultChunks[size] = chunks[i];
+                    resultContainers[size] = container;
+                    resultCounts[size++] = count;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return new RowSet(resultChunks, resultContainers, resultCounts, size);
+    }
+
+    /**
+     * Lists the rows in the set.
+     *
+     * @return Returns the rows in ascending order
+     */
+    int[] toArray() {
+        int[] rows = new int[cardinality];
+        int n = 0;
+
+        for (int i = 0; i < chunks.length; i++) {
+            int high = chunks[i] << 16;
+            if (containers[i] instanceof char[]) {
+                for (char low : (char[]) containers[i])
+                    rows[n++] = high | low;
+            }
+            else {
+                long[] bitmap = (long[]) containers[i];
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+                        rows[n++] = high | word << 6 | Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    private static Object and(Object a, Object b) {
+        if (a instanceof char[] && b instanceof char[])
+            return and((char[]) a, (char[]) b);
+        if (a instanceof char[])
+            return and((char[]) a, (long[]) b);
+        if (b instanceof char[])
+            return and((char[]) b, (long[]) a);
+
+        long[] x = (long[]) a;
+        long[] y = (long[]) b;
+        long[] bitmap = new long[BITMAP_WORDS];
+        int count = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            bitmap[word] = x[word] & y[word];
+            count += Long.bitCount(bitmap[word]);
+        }
+        if (count > ARRAY_LIMIT)
+            return bitmap;
+
+        char[] low = new char[count];
+        int n = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+                low[n++] = (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+        }
+        return low;
+    }
+
+    private static char[] and(char[] a, char[] b) {
+        char[] low = new char[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j])
+                i++;
+            else if (a[i] > b[j])
+                j++;
+            else {
+                low[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(low, n);
+    }
+
+    private static char[] and(char[] a, long[] bitmap) {
+        char[] low = new char[a.length];
+        int n = 0;
+        for (char value : a) {
+            if ((bitmap[value >>> 6] & 1L << value) != 0)
+                low[n++] = value;
+        }
+        return Arrays.copyOf(low, n);
+    }
+
+    private static int count(Object container) {
+        if (container instanceof char[])
+            return ((char[]) container).length;
+
+        int count = 0;
+        for (long word : (long[]) container)
+            count += Long.bitCount(word);
+        return count;
+    }
+}
@@ -0,0 +1,344 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted index from a long key to Part IDs.
+ *
+ * This class keeps (key, ID) entries in parallel primitive arrays sorted by key and then ID, so range, count and
+ * top-K queries are binary searches. Changes are not applied to the sorted arrays one at a time. New entries go into a
+ * small sorted buffer, removed entries are marked in a bit set and counted by a Fenwick tree, and both are merged into
+ * the sorted arrays once enough have built up. A change therefore costs the buffer size plus a share of the next merge,
+ * and a query costs log n plus the size of the buffer and of its result.
+ *
+ * <p> The buffer grows with the square root of the index, so merges stay rare as the catalog grows. Changes to many
+ * entries at once should use rebuild instead. </p>
+ */
+class SortedIndex {
+    private static final int MIN_BATCH = 1024;
+
+    // Merged entries, sorted by key and then ID
+    private long[] keys = new long[0];
+    private int[] ids = new int[0];
+    private int size;
+
+    // Merged entries removed since the last merge, and a Fenwick tree counting them by position
+    private final BitSet removed = new BitSet();
+    private int[] removedTree = new int[1];
+    private int removedCount;
+
+    // Entries added since the last merge, sorted the same way
+    private long[] pendingKeys = new long[16];
+    private int[] pendingIds = new int[16];
+    private int pendingCount;
+
+    /**
+     * Replaces every entry.
+     *
+     * @param newKeys The keys, in any order
+     * @param newIds The ID that goes with each key
+     * @param count The number of entries
+     */
+    void rebuild(long[] newKeys, int[] newIds, int count) {
+        keys = Arrays.copyOf(newKeys, count);
+        ids = Arrays.copyOf(newIds, count);
+        sort(keys, ids, 0, count, new long[count], new int[count]);
+        size = count;
+        pendingCount = 0;
+        resetRemoved();
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param key The key
+     * @param id The Part ID
+     */
+    void add(long key, int id) {
+        if (pendingCount == pendingKeys.length) {
+            pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+            pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+        }
+
+        int at = -search(pendingKeys, pendingIds, pendingCount, key, id) - 1;
+        System.arraycopy(pendingKeys, at, pendingKeys, at + 1, pendingCount - at);
+        System.arraycopy(pendingIds, at, pendingIds, at + 1, pendingCount - at);
+        pendingKeys[at] = key;
+        pendingIds[at] = id;
+        pendingCount++;
+
+        if (pendingCount >= batchSize())
+            merge();
+    }
+
+    /**
+     * Removes an entry added before. Entries that are not in the index are ignored.
+     *
+     * @param key The key it was added with
+     * @param id The Part ID
+     */
+    void remove(long key, int id) {
+        int at = search(pendingKeys, pendingIds, pendingCount, key, id);
+        if (at >= 0) {
+            System.arraycopy(pendingKeys, at + 1, pendingKeys, at, pendingCount - at - 1);
+            System.arraycopy(pendingIds, at + 1, pendingIds, at, pendingCount - at - 1);
+            pendingCount--;
+            return;
+        }
+
+        at = search(keys, ids, size, key, id);
+        if (at < 0 || removed.get(at))
+            return;
+        removed.set(at);
+        for (int i = at + 1; i < removedTree.length; i += i & -i)
+            removedTree[i]++;
+        if (++removedCount >= batchSize())
+            merge();
+    }
+
+    /**
+     * Moves an entry to a new key.
+     *
+     * @param oldKey The key it was added with
+     * @param newKey The new key
+     * @param id The Part ID
+     */
+    void move(long oldKey, long newKey, int id) {
+        if (oldKey == newKey)
+            return;
+        remove(oldKey, id);
+        add(newKey, id);
+    }
+
+    /**
+     * Counts the entries with a key from low to high, inclusive.
+     *
+     * @param low The smallest key
+     * @param high The largest key
+     * @return Returns the number of entries in the range
+     */
+    int count(long low, long high) {
+        if (low > high)
+            return 0;
+
+        int from = lowerBound(keys, size, low);
+        int to = upperBound(keys, size, high);
+        int count = to - from - (removedBefore(to) - removedBefore(from));
+        return count + upperBound(pendingKeys, pendingCount, high) - lowerBound(pendingKeys, pendingCount, low);
+    }
+
+    /**
+     * Finds the entries with a key from low to high, inclusive.
+     *
+     * @param low The smallest key
+     * @param high The largest key
+     * @return Returns the IDs of the entries in key order
+     */
+    int[] range(long low, long high) {
+        if (low > high)
+            return new int[0];
+
+        int from = lowerBound(keys, size, low);
+        int to = upperBound(keys, size, high);
+        int pendingFrom = lowerBound(pendingKeys, pendingCount, low);
+        int pendingTo = upperBound(pendingKeys, pendingCount, high);
+        return collect(from, to, pendingFrom, pendingTo, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the entries with the smallest keys.
+     *
+     * @param k The largest number of entries to return
+     * @return Returns the IDs of up to k entries, smallest key first
+     */
+    int[] lowest(int k) {
+        return collect(0, size, 0, pendingCount, k);
+    }
+
+    /**
+     * Finds the entries with the largest keys.
+     *
+     * @param k The largest number of entries to return
+     * @return Returns the IDs of up to k entries, largest key first
+     */
+    int[] highest(int k) {
+        int[] result = new int[Math.max(Math.min(k, size - removedCount + pendingCount), 0)];
+        int row = size - 1;
+        int pending = pendingCount - 1;
+
+        for (int n = 0; n < result.length; n++) {
+            row = removed.previousClearBit(row);
+            if (pending >= 0
+                    && (row < 0 || compare(pendingKeys[pending], pendingIds[pending], keys[row], ids[row]) > 0))
+                result[n] = pendingIds[pending--];
+            else
+                result[n] = ids[row--];
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return Returns the size of the index
+     */
+    int size() {
+        return size - removedCount + pendingCount;
+    }
+
+    /**
+     * Turns a double into a key that sorts the same way.
+     *
+     * @param value The value, which must not be NaN
+     * @return Returns a long that compares like the value, with -0.0 equal to 0.0
+     */
+    static long doubleKey(double value) {
+        long bits = Double.doubleToLongBits(value + 0.0);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    // Merges rows from to to of the sorted arrays with the buffered entries from pendingFrom to pendingTo
+    private int[] collect(int from, int to, int pendingFrom, int pendingTo, int limit) {
+        int available = to - from - (removedBefore(to) - removedBefore(from)) + pendingTo - pendingFrom;
+        int[] result = new int[Math.max(Math.min(limit, available), 0)];
+        int row = from;
+        int pending = pendingFrom;
+
+        for (int n = 0; n < result.length; n++) {
+            row = removed.nextClearBit(row);
+            if (pending < pendingTo
+                    && (row >= to || compare(pendingKeys[pending], pendingIds[pending], keys[row], ids[row]) < 0))
+                result[n] = pendingIds[pending++];
+            else
+                result[n] = ids[row++];
+        }
+
+        return result;
+    }
+
+    // Writes the live sorted entries and the buffer into new sorted arrays
+    private void merge() {
+        int count = size - removedCount + pendingCount;
+        long[] mergedKeys = new long[count];
+        int[] mergedIds = new int[count];
+        int row = 0;
+        int pending = 0;
+
+        for (int n = 0; n < count; n++) {
+            row = Math.min(removed.nextClearBit(row), size);
+            if (pending < pendingCount
+                    && (row >= size || compare(pendingKeys[pending], pendingIds[pending], keys[row], ids[row]) < 0)) {
+                mergedKeys[n] = pendingKeys[pending];
+                mergedIds[n] = pendingIds[pending++];
+            }
+            else {
+                mergedKeys[n] = keys[row];
+                mergedIds[n] = ids[row++];
+            }
+        }
+
+        keys = mergedKeys;
+        ids = mergedIds;
+        size = count;
+        pendingCount = 0;
+        resetRemoved();
+    }
+
+    private void resetRemoved() {
+        removed.clear();
+        removedTree = new int[size + 1];
+        removedCount = 0;
+    }
+
+    private int batchSize() {
+        return Math.max(MIN_BATCH, 4 * (int) Math.sqrt(size));
+    }
+
+    // Number of removed rows before the given row
+    private int removedBefore(int row) {
+        int count = 0;
+        for (int i = row; i > 0; i -= i & -i)
+            count += removedTree[i];
+        return count;
+    }
+
+    // Binary search for an entry: its position, or -(insertion point) - 1
+    private static int search(long[] keys, int[] ids, int count, long key, int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = compare(keys[middle], ids[middle], key, id);
+            if (order < 0)
+                low = middle + 1;
+            else if (order > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -low - 1;
+    }
+
+    // First position whose key is at least key
+    private static int lowerBound(long[] keys, int count, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // First position whose key is greater than key
+    private static int upperBound(long[] keys, int count, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static int compare(long key, int id, long otherKey, int otherId) {
+        int order = Long.compare(key, otherKey);
+        return order != 0 ? order : Integer.compare(id, otherId);
+    }
+
+    // Merge sort of the parallel arrays from from to to, using the scratch arrays
+    private static void sort(long[] keys, int[] ids, int from, int to, long[] keyScratch, int[] idScratch) {
+        if (to - from < 2)
+            return;
+
+        int middle = (from + to) >>> 1;
+        sort(keys, ids, from, middle, keyScratch, idScratch);
+        sort(keys, ids, middle, to, keyScratch, idScratch);
+        if (compare(keys[middle - 1], ids[middle - 1], keys[middle], ids[middle]) <= 0)
+            return;
+
+        System.arraycopy(keys, from, keyScratch, from, to - from);
+        System.arraycopy(ids, from, idScratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int n = from; n < to; n++) {
+            if (right >= to || (left < middle
+                    && compare(keyScratch[left], idScratch[left], keyScratch[right], idScratch[right]) <= 0)) {
+                keys[n] = keyScratch[left];
+                ids[n] = idScratch[left++];
+            }
+            else {
+                keys[n] = keyScratch[right];
+                ids[n] = idScratch[right++];
+            }
+        }
+    }
+}
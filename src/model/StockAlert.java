@@ -0,0 +1,106 @@
+package model;
+
+/**
+ * An alert about the stock of a Part or Product.
+ *
+ * This class describes an item whose stock is below its min, or close enough to its max that it should not be
+ * restocked. It records the item's fields at the moment the alert was raised or last changed.
+ */
+public class StockAlert {
+    /**
+     * The kinds of stock alert.
+     */
+    public enum Level {
+        /** The stock is below min and the item should be reordered. */
+        BELOW_MIN,
+        /** The stock is at or near max. */
+        NEAR_MAX
+    }
+
+    private final boolean part;
+    private final int id;
+    private final String name;
+    private final int stock;
+    private final int min;
+    private final int max;
+    private final Level level;
+
+    StockAlert(boolean part, int id, String name, int stock, int min, int max, Level level) {
+        this.part = part;
+        this.id = id;
+        this.name = name;
+        this.stock = stock;
+        this.min = min;
+        this.max = max;
+        this.level = level;
+    }
+
+    /**
+     * Tells whether the alert is about a Part or a Product.
+     *
+     * @return Returns true for a Part, false for a Product
+     */
+    public boolean isPart() {
+        return part;
+    }
+
+    /**
+     * Getter for ID.
+     *
+     * @return Returns the ID of the Part or Product
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter for name.
+     *
+     * @return Returns the name of the Part or Product
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for stock.
+     *
+     * @return Returns the stock when the alert was raised or last changed
+     */
+    public int getStock() {
+        return stock;
+    }
+
+    /**
+     * Getter for min.
+     *
+     * @return Returns the min of the Part or Product
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Getter for max.
+     *
+     * @return Returns the max of the Part or Product
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Getter for level.
+     *
+     * @return Returns the kind of alert
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return (part ? "Part " : "Product ") + id + " (" + name + ") " + level + ": stock " + stock + ", min " + min
+                + ", max " + max;
+    }
+}
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Receives the alerts raised and cleared by StockAlerts.
+ *
+ * The methods are called once the change that raised or cleared the alert is made and Inventory's lock is released,
+ * on the thread that made a change, one alert at a time and in the order they happened. A listener may read
+ * Inventory and StockAlerts, but it holds up the other alerts and the thread that changed the item, so it should
+ * return quickly. A JavaFX view should hand the alert to Platform.runLater.
+ */
+public interface StockAlertListener {
+    /**
+     * Called when an item's stock goes below its min or near its max.
+     *
+     * @param alert The new alert
+     */
+    void alertRaised(StockAlert alert);
+
+    /**
+     * Called when an item's stock is back in range, or the item was removed.
+     *
+     * @param alert The alert that no longer applies
+     */
+    default void alertCleared(StockAlert alert) {
+    }
+}
@@ -0,0 +1,231 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps track of the Parts and Products whose stock needs attention.
+ *
+ * This class follows the changes to Inventory and keeps the set of items whose stock is below their min, and of
+ * items whose stock is near their max. Only the item that changed is checked again, so reading the alerts costs
+ * nothing beyond their number, whatever the size of the catalog. Each time an item enters or leaves one of the sets,
+ * the registered StockAlertListeners are told.
+ *
+ * <p> An item is near max when its stock is within the given fraction of its min to max range from max, for example
+ * stock 90 or more with a fraction of 0.1, min 0 and max 100. Items whose min equals their max are never near
+ * max. </p>
+ *
+ * <p> Each item is checked while holding that item's entry in the alert map, and its current stock is read there, so
+ * the alerts always match the latest stock even when the item is adjusted from several threads at once, and the
+ * events for one item are queued in order. The queued events are told to the listeners in afterChange, once
+ * Inventory's lock is released and outside the alert map, by one thread at a time. A thread that finds another one
+ * telling them leaves its events to that thread, so they may reach the listeners just after it returns. </p>
+ */
+public class StockAlerts implements InventoryListener, AutoCloseable {
+    private final double nearMaxFraction;
+
+    // ID -> current alert, holding only the items that have one
+    private final ConcurrentHashMap<Integer, StockAlert> partAlerts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, StockAlert> productAlerts = new ConcurrentHashMap<>();
+
+    private final List<StockAlertListener> listeners = new CopyOnWriteArrayList<>();
+    // Alerts raised and cleared, in the order they happened, waiting for Inventory's lock to be released
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    // Held while telling the listeners, so the events reach them one at a time and in order
+    private final Object delivery = new Object();
+
+    private StockAlerts(double nearMaxFraction) {
+        this.nearMaxFraction = nearMaxFraction;
+    }
+
+    /**
+     * Starts watching Inventory.
+     *
+     * This method checks every item in Inventory once and then follows each change.
+     * @param nearMaxFraction The part of the min to max range, below max, that counts as near max
+     * @return Returns the alert tracker
+     */
+    public static StockAlerts watch(double nearMaxFraction) {
+        StockAlerts alerts = new StockAlerts(nearMaxFraction);
+
+        // Seeded under Inventory's lock, so no item can be replaced or removed before it is checked. Stock adjusted
+        // meanwhile is read again inside check.
+        Inventory.addListener(alerts, snapshot -> {
+            for (Part part : snapshot.getParts())
+                alerts.checkPart(part);
+            for (Product product : snapshot.getProducts())
+                alerts.checkProduct(product);
+        });
+
+        return alerts;
+    }
+
+    /**
+     * Registers a listener for alerts.
+     *
+     * The listener is only told about alerts raised or cleared from now on. getPartAlerts() and getProductAlerts()
+     * give the current ones.
+     * @param listener The listener to be added
+     */
+    public void addListener(StockAlertListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by addListener.
+     *
+     * @param listener The listener to be removed
+     */
+    public void removeListener(StockAlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the current alerts for Parts.
+     *
+     * @return Returns a new list of the alerts, in no particular order
+     */
+    public List<StockAlert> getPartAlerts() {
+        return new ArrayList<>(partAlerts.values());
+    }
+
+    /**
+     * Returns the current alerts for Products.
+     *
+     * @return Returns a new list of the alerts, in no particular order
+     */
+    public List<StockAlert> getProductAlerts() {
+        return new ArrayList<>(productAlerts.values());
+    }
+
+    /**
+     * Stops following changes to Inventory.
+     */
+    @Override
+    public void close() {
+        Inventory.removeListener(this);
+    }
+
+    @Override
+    public void afterChange() {
+        if (events.isEmpty())
+            return;
+        synchronized (delivery) {
+            Event event;
+            while ((event = events.poll()) != null) {
+                for (StockAlertListener listener : listeners) {
+                    if (event.raised)
+                        listener.alertRaised(event.alert);
+                    else
+                        listener.alertCleared(event.alert);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        checkPart(part);
+    }
+
+    @Override
+    public void partUpdated(Part oldPart, Part newPart) {
+        if (oldPart.getId() != newPart.getId())
+            clear(partAlerts, oldPart.getId());
+        checkPart(newPart);
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        clear(partAlerts, part.getId());
+    }
+
+    @Override
+    public void partStockAdjusted(Part part, int delta) {
+        checkPart(part);
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        checkProduct(product);
+    }
+
+    @Override
+    public void productUpdated(Product oldProduct, Product newProduct) {
+        if (oldProduct.getId() != newProduct.getId())
+            clear(productAlerts, oldProduct.getId());
+        checkProduct(newProduct);
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        clear(productAlerts, product.getId());
+    }
+
+    @Override
+    public void productStockAdjusted(Product product, int delta) {
+        checkProduct(product);
+    }
+
+    private void checkPart(Part part) {
+        check(partAlerts, true, part.getId(), part.getName(), part::getStock, part.getMin(), part.getMax());
+    }
+
+    private void checkProduct(Product product) {
+        check(productAlerts, false, product.getId(), product.getName(), product::getStock, product.getMin(),
+                product.getMax());
+    }
+
+    // Works out the item's alert from its current stock and queues any change
+    private void check(ConcurrentHashMap<Integer, StockAlert> alerts, boolean part, int id, String name,
+                       IntSupplier stock, int min, int max) {
+        alerts.compute(id, (key, previous) -> {
+            int current = stock.getAsInt();
+            StockAlert.Level level = level(current, min, max);
+            if (level == null) {
+                if (previous != null)
+                    events.add(new Event(previous, false));
+                return null;
+            }
+
+            StockAlert alert = new StockAlert(part, id, name, current, min, max, level);
+            if (previous == null || previous.getLevel() != level) {
+                if (previous != null)
+                    events.add(new Event(previous, false));
+                events.add(new Event(alert, true));
+            }
+            return alert;
+        });
+    }
+
+    private void clear(ConcurrentHashMap<Integer, StockAlert> alerts, int id) {
+        alerts.computeIfPresent(id, (key, previous) -> {
+            events.add(new Event(previous, false));
+            return null;
+        });
+    }
+
+    private StockAlert.Level level(int stock, int min, int max) {
+        if (stock < min)
+            return StockAlert.Level.BELOW_MIN;
+        if (max > min && stock >= max - (long) Math.ceil((max - (long) min) * nearMaxFraction))
+            return StockAlert.Level.NEAR_MAX;
+        return null;
+    }
+
+    // An alert raised or cleared
+    private static class Event {
+        final StockAlert alert;
+        final boolean raised;
+
+        Event(StockAlert alert, boolean raised) {
+            this.alert = alert;
+            this.raised = raised;
+        }
+    }
+}
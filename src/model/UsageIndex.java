@@ -0,0 +1,79 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reverse index from a Part ID to the Products that use the Part.
+ *
+ * This class records, for every Part ID, which Product IDs have the Part in their bill of materials and how many
+ * of it they need. It lets Inventory answer "where is this Part used" without going through every Product.
+ */
+class UsageIndex {
+    private static final int[] NONE = new int[0];
+
+    // Part ID -> (Product ID -> quantity of the Part the Product needs)
+    private final Map<Integer, IdIndex> usage = new HashMap<>();
+
+    /**
+     * Records that a Product needs more of a Part.
+     *
+     * @param partId The ID of the associated Part
+     * @param productId The ID of the Product
+     * @param quantity The number more that the Product needs
+     */
+    void add(int partId, int productId, int quantity) {
+        IdIndex products = usage.computeIfAbsent(partId, k -> new IdIndex());
+        products.put(productId, Math.max(products.get(productId), 0) + quantity);
+    }
+
+    /**
+     * Records that a Product needs less of a Part.
+     *
+     * @param partId The ID of the associated Part
+     * @param productId The ID of the Product
+     * @param quantity The number less that the Product needs
+     */
+    void remove(int partId, int productId, int quantity) {
+        IdIndex products = usage.get(partId);
+        if (products == null)
+            return;
+
+        int count = products.get(productId);
+        if (count > quantity)
+            products.put(productId, count - quantity);
+        else
+            products.remove(productId);
+
+        if (products.size() == 0)
+            usage.remove(partId);
+    }
+
+    /**
+     * Checks whether any Product lists the Part.
+     *
+     * @param partId The ID of the Part
+     * @return Returns true if at least one Product has the Part as an associated Part
+     */
+    boolean isUsed(int partId) {
+        return usage.containsKey(partId);
+    }
+
+    /**
+     * Lists the Products that use the Part.
+     *
+     * @param partId The ID of the Part
+     * @return Returns the IDs of every Product that has the Part as an associated Part
+     */
+    int[] productsUsing(int partId) {
+        IdIndex products = usage.get(partId);
+        return products == null ? NONE : products.keys();
+    }
+
+    /**
+     * Removes every entry from the index.
+     */
+    void clear() {
+        usage.clear();
+    }
+}
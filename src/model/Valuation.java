@@ -0,0 +1,111 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the value in stock.
+ *
+ * This class keeps the value (stock times price) of the InHouse Parts, the Outsourced Parts of each company and the
+ * Products, in whole cents so the totals never drift however many changes are applied. Inventory adds or subtracts
+ * one item's value on every add, update and delete, and the delta times the price on every stock adjustment, so
+ * reading the totals never scans the catalog.
+ *
+ * <p> Adds, updates and deletes happen under Inventory's write lock. Stock adjustments only hold the read lock and
+ * may run at the same time as each other, so the totals are LongAdders. The company map itself only changes under the
+ * write lock. </p>
+ */
+class Valuation {
+    private final LongAdder inHouseCents = new LongAdder();
+    private final LongAdder productCents = new LongAdder();
+    // Company name -> value of its Outsourced Parts
+    private final Map<String, Company> companies = new HashMap<>();
+
+    /**
+     * Adds the value of a Part that joined Inventory.
+     *
+     * @param part The Part added
+     */
+    void addPart(Part part) {
+        if (part instanceof Outsourced) {
+            Company company = companies.computeIfAbsent(((Outsourced) part).getCompanyName(), name -> new Company());
+            company.parts++;
+            company.cents.add(valueCents(part));
+        }
+        else {
+            inHouseCents.add(valueCents(part));
+        }
+    }
+
+    /**
+     * Subtracts the value of a Part that left Inventory.
+     *
+     * @param part The Part removed, with the stock it had in Inventory
+     */
+    void removePart(Part part) {
+        if (part instanceof Outsourced) {
+            String name = ((Outsourced) part).getCompanyName();
+            Company company = companies.get(name);
+            company.cents.add(-valueCents(part));
+            if (--company.parts == 0)
+                companies.remove(name);
+        }
+        else {
+            inHouseCents.add(-valueCents(part));
+        }
+    }
+
+    /**
+     * Adds the value of a stock adjustment to a Part.
+     *
+     * @param part The Part that was adjusted
+     * @param delta The change in stock
+     */
+    void partStockAdjusted(Part part, int delta) {
+        long cents = delta * PartColumns.toCents(part.getPrice());
+        if (part instanceof Outsourced)
+            companies.get(((Outsourced) part).getCompanyName()).cents.add(cents);
+        else
+            inHouseCents.add(cents);
+    }
+
+    void addProduct(Product product) {
+        productCents.add(PartColumns.toCents(product.getPrice()) * product.getStock());
+    }
+
+    void removeProduct(Product product) {
+        productCents.add(-PartColumns.toCents(product.getPrice()) * product.getStock());
+    }
+
+    void productStockAdjusted(Product product, int delta) {
+        productCents.add(delta * PartColumns.toCents(product.getPrice()));
+    }
+
+    /**
+     * Copies the current totals.
+     *
+     * @return Returns the totals, which include every adjustment that finished before the call
+     */
+    InventoryValuation snapshot() {
+        Map<String, Long> companyCents = new HashMap<>();
+        long outsourcedCents = 0;
+        for (Map.Entry<String, Company> entry : companies.entrySet()) {
+            long cents = entry.getValue().cents.sum();
+            companyCents.put(entry.getKey(), cents);
+            outsourcedCents += cents;
+        }
+
+        return new InventoryValuation(inHouseCents.sum(), outsourcedCents, productCents.sum(), companyCents);
+    }
+
+    private static long valueCents(Part part) {
+        return PartColumns.toCents(part.getPrice()) * part.getStock();
+    }
+
+    private static class Company {
+        final LongAdder cents = new LongAdder();
+        // Number of this company's Parts in Inventory; the entry goes when it reaches 0
+        int parts;
+    }
+}
@@ -0,0 +1,192 @@
+package service;
+
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds Parts and Products from named field values.
+ *
+ * This class turns text fields, such as the parameters of a request or the FIELD=VALUE words of a batch script, into
+ * a new Part or Product. When an existing item is given, the new one starts as a copy of it and only the given fields
+ * change, so it can be passed to Inventory's update methods.
+ *
+ * <p> The fields are name, price, stock, min and max, machineId or companyName for Parts (which also makes the Part
+ * InHouse or Outsourced), and partIds for Products, a list of associated Part IDs separated by commas or
+ * semicolons. </p>
+ */
+public class Edits {
+    private Edits() {
+    }
+
+    /**
+     * Builds a Part from field values.
+     *
+     * @param current The Part being changed, or null to build a new Part from all of its fields
+     * @param id The ID of the new Part
+     * @param fields The field values, keyed by field name
+     * @return Returns the new Part
+     * @throws IllegalArgumentException If a field is unknown, missing or not a number
+     */
+    public static Part editPart(Part current, int id, Map<String, String> fields) {
+        for (String field : fields.keySet()) {
+            switch (field) {
+                case "name":
+                case "price":
+                case "stock":
+                case "min":
+                case "max":
+                case "machineId":
+                case "companyName":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Parts have no field " + field + ".");
+            }
+        }
+
+        String name = text(fields, "name", current == null ? null : current.getName());
+        double price = fields.containsKey("price") ? parsePrice(fields.get("price"))
+                : current != null ? current.getPrice() : missing("price");
+        int stock = number(fields, "stock", current == null ? null : current.getStock());
+        int min = number(fields, "min", current == null ? null : current.getMin());
+        int max = number(fields, "max", current == null ? null : current.getMax());
+
+        if (fields.containsKey("machineId"))
+            return new InHouse(id, name, price, stock, min, max, parseInt(fields.get("machineId")));
+        if (fields.containsKey("companyName"))
+            return new Outsourced(id, name, price, stock, min, max, fields.get("companyName"));
+        if (current instanceof InHouse)
+            return new InHouse(id, name, price, stock, min, max, ((InHouse) current).getMachineId());
+        if (current instanceof Outsourced)
+            return new Outsourced(id, name, price, stock, min, max, ((Outsourced) current).getCompanyName());
+        throw new IllegalArgumentException("Missing field machineId or companyName.");
+    }
+
+    /**
+     * Builds a Product from field values.
+     *
+     * When partIds is not given, the new Product keeps the associated Parts of the current one.
+     * @param current The Product being changed, or null to build a new Product from all of its fields
+     * @param id The ID of the new Product
+     * @param fields The field values, keyed by field name
+     * @return Returns the new Product
+     * @throws IllegalArgumentException If a field is unknown, missing or not a number, or an associated Part does not
+     * exist
+     */
+    public static Product editProduct(Product current, int id, Map<String, String> fields) {
+        for (String field : fields.keySet()) {
+            switch (field) {
+                case "name":
+                case "price":
+                case "stock":
+                case "min":
+                case "max":
+                case "partIds":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Products have no field " + field + ".");
+            }
+        }
+
+        String name = text(fields, "name", current == null ? null : current.getName());
+        double price = fields.containsKey("price") ? parsePrice(fields.get("price"))
+                : current != null ? current.getPrice() : missing("price");
+        int stock = number(fields, "stock", current == null ? null : current.getStock());
+        int min = number(fields, "min", current == null ? null : current.getMin());
+        int max = number(fields, "max", current == null ? null : current.getMax());
+        Product product = new Product(id, name, price, stock, min, max);
+
+        if (fields.containsKey("partIds")) {
+            List<Part> parts = new ArrayList<>();
+            for (String partId : fields.get("partIds").split("[,;]")) {
+                if (partId.isBlank())
+                    continue;
+                Part part = Inventory.lookupPart(parseInt(partId.trim()));
+                if (part == null)
+                    throw new IllegalArgumentException("Associated part " + partId.trim() + " does not exist.");
+                parts.add(part);
+            }
+            product.addAssociatedParts(parts);
+        }
+        else if (current != null) {
+            product.addAssociatedParts(current.getBillOfMaterials());
+        }
+
+        return product;
+    }
+
+    private static String text(Map<String, String> fields, String field, String currentValue) {
+        if (fields.containsKey(field))
+            return fields.get(field);
+        if (currentValue == null)
+            missing(field);
+        return currentValue;
+    }
+
+    private static int number(Map<String, String> fields, String field, Integer currentValue) {
+        if (fields.containsKey(field))
+            return parseInt(fields.get(field));
+        if (currentValue == null)
+            missing(field);
+        return currentValue;
+    }
+
+    private static double missing(String field) {
+        throw new IllegalArgumentException("Missing field " + field + ".");
+    }
+
+    /**
+     * Parses a whole number.
+     *
+     * @param value The text to be parsed
+     * @return Returns the number
+     * @throws IllegalArgumentException If the text is not a whole number
+     */
+    public static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a whole number: " + value);
+        }
+    }
+
+    /**
+     * Parses a number.
+     *
+     * @param value The text to be parsed
+     * @return Returns the number, which is finite
+     * @throws IllegalArgumentException If the text is not a number, or is NaN or infinite
+     */
+    public static double parseDouble(String value) {
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+
+        if (!Double.isFinite(number))
+            throw new IllegalArgumentException("Not a finite number: " + value);
+        return number;
+    }
+
+    /**
+     * Parses a price.
+     *
+     * @param value The text to be parsed
+     * @return Returns the price, which is finite and not negative
+     * @throws IllegalArgumentException If the text is not a valid price
+     */
+    public static double parsePrice(String value) {
+        double price = parseDouble(value);
+        if (price < 0)
+            throw new IllegalArgumentException("Price cannot be negative: " + value);
+        return price;
+    }
+}
@@ -0,0 +1,574 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Buildability;
+import model.Inventory;
+import model.InventoryValuation;
+import model.Matches;
+import model.Part;
+import model.PartQuery;
+import model.Product;
+import model.StockAlert;
+import model.StockAlerts;
+import storage.InventoryExporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP service over Inventory.
+ *
+ * This class serves the Parts and Products in Inventory as JSON, using the JDK's built-in HTTP server, so warehouse
+ * terminals can look up and change stock without the desktop UI. Each request runs on a virtual thread when the
+ * runtime has them (Java 21 and later), and on a bounded thread pool otherwise. The service has no authentication,
+ * so it listens on the loopback interface unless it is given another address.
+ *
+ * <pre>
+ * GET    /parts?offset=&amp;limit=&amp;name=     A page of Parts, optionally only those whose names contain name
+ *                                        and that meet the conditions type (InHouse or Outsourced),
+ *                                        companyName, machineId, minPrice, maxPrice, minStock, maxStock and
+ *                                        belowMin=true (see Inventory.query)
+ * POST   /parts                          Adds a Part; the fields are read by Edits
+ * GET    /parts/ID                       The Part with the ID
+ * PUT    /parts/ID                       Changes the given fields of the Part
+ * DELETE /parts/ID                       Deletes the Part, unless it is associated with a Product
+ * GET    /parts/ID/products              The Products that use the Part
+ * POST   /parts/ID/stock?delta=N         Adds N (which may be negative) to the Part's stock
+ * GET    /products?offset=&amp;limit=&amp;name=  A page of Products
+ * POST   /products                       Adds a Product
+ * GET    /products/ID                    The Product with the ID
+ * PUT    /products/ID                    Changes the given fields of the Product
+ * DELETE /products/ID                    Deletes the Product
+ * GET    /products/ID/parts              The associated Parts (bill of materials) of the Product
+ * POST   /products/ID/stock?delta=N      Adds N to the Product's stock
+ * GET    /products/ID/buildable          How many of the Product the Part stock allows (see Buildability)
+ * GET    /alerts                         The items below min or near max (see StockAlerts)
+ * GET    /valuation                      The value of the stock, split into InHouse, Outsourced by company and
+ *                                        Products
+ * </pre>
+ *
+ * <p> Fields are sent as query parameters or as a form body. Parts and Products are written in the JSON format of
+ * InventoryExporter, and lists as {"total":N,"offset":N,"items":[...]}. Responses are streamed in chunks rather than
+ * built whole. Invalid fields give status 400, unknown IDs 404, and deleting a Part that is in use or a stock change
+ * that would leave the stock outside min and max 409, each with {"error":"..."}. </p>
+ *
+ * <p> The JDK server closes keep-alive connections beyond sun.net.httpserver.maxIdleConnections idle ones (200 by
+ * default), and a client that reuses one just as it is closed gets a reset. The property is read once, when the
+ * first server is created, so programs serving many clients set it before that (see BatchMain). LoadDriver checks
+ * the service with thousands of concurrent clients. </p>
+ */
+public class InventoryService {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final double NEAR_MAX_FRACTION = 0.1;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StockAlerts alerts;
+    private final Buildability buildability;
+
+    /**
+     * Constructor for InventoryService.
+     *
+     * This is the constructor for a service that only accepts connections from the same machine. The service does
+     * not accept requests until it is started.
+     * @param port The local port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public InventoryService(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Constructor for InventoryService.
+     *
+     * The service does not accept requests until it is started.
+     * @param address The local address to listen on; the wildcard address listens on every interface
+     * @param port The local port to listen on, or 0 for any free port
+     * @throws IOException If the port cannot be opened
+     */
+    public InventoryService(InetAddress address, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(address, port), 1024);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/parts", exchange -> handle(exchange, true));
+        server.createContext("/products", exchange -> handle(exchange, false));
+        server.createContext("/alerts", this::listAlerts);
+        server.createContext("/valuation", InventoryService::showValuation);
+        alerts = StockAlerts.watch(NEAR_MAX_FRACTION);
+        buildability = Buildability.watch();
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for the running ones to finish.
+     *
+     * @param delaySeconds The longest time to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        alerts.close();
+        buildability.close();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Getter for the port.
+     *
+     * @return Returns the port the service listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Getter for the alerts.
+     *
+     * @return Returns the stock alerts served under /alerts, to which more listeners can be added
+     */
+    public StockAlerts getAlerts() {
+        return alerts;
+    }
+
+    // Routes a request under /parts or /products and turns failures into error responses
+    private void handle(HttpExchange exchange, boolean parts) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> fields = fields(exchange);
+            String method = exchange.getRequestMethod();
+
+            // path[0] is empty and path[1] is "parts" or "products"
+            if (path.length == 2) {
+                if (method.equals("GET"))
+                    list(exchange, parts, fields);
+                else if (method.equals("POST"))
+                    add(exchange, parts, fields);
+                else
+                    throw new ServiceError(405, "Method not allowed.");
+            }
+            else if (path.length == 3) {
+                int id = Edits.parseInt(path[2]);
+                switch (method) {
+                    case "GET":
+                        get(exchange, parts, id);
+                        break;
+                    case "PUT":
+                        update(exchange, parts, id, fields);
+                        break;
+                    case "DELETE":
+                        delete(exchange, parts, id);
+                        break;
+                    default:
+                        throw new ServiceError(405, "Method not allowed.");
+                }
+            }
+            else if (path.length == 4 && method.equals("GET") && path[3].equals(parts ? "products" : "parts")) {
+                related(exchange, parts, Edits.parseInt(path[2]));
+            }
+            else if (path.length == 4 && method.equals("GET") && !parts && path[3].equals("buildable")) {
+                int id = Edits.parseInt(path[2]);
+                int count = buildability.getBuildable(id);
+                if (count < 0)
+                    throw new ServiceError(404, "No such product exists.");
+                try (JsonWriter out = new JsonWriter(exchange, 200)) {
+                    out.text.append("{\"id\":").append(id).append(",\"buildable\":").append(count).append('}');
+                }
+            }
+            else if (path.length == 4 && method.equals("POST") && path[3].equals("stock")) {
+                adjustStock(exchange, parts, Edits.parseInt(path[2]), fields);
+            }
+            else
+                throw new ServiceError(404, "Not found.");
+        } catch (ServiceError e) {
+            error(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            error(exchange, 500, "Internal error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void list(HttpExchange exchange, boolean parts, Map<String, String> fields) throws IOException {
+        int offset = Math.max(fields.containsKey("offset") ? Edits.parseInt(fields.get("offset")) : 0, 0);
+        int limit = fields.containsKey("limit") ? Edits.parseInt(fields.get("limit")) : DEFAULT_LIMIT;
+        limit = Math.min(Math.max(limit, 0), MAX_LIMIT);
+        String name = fields.get("name");
+        PartQuery query = parts ? partQuery(fields) : null;
+
+        List<?> page;
+        int total;
+        if (query != null) {
+            List<Part> matches = Inventory.query(query.nameContains(name));
+            total = matches.size();
+            int from = Math.min(offset, total);
+            page = matches.subList(from, Math.min(from + limit, total));
+        }
+        else if (name != null) {
+            // Counting keeps nothing but the count, and the page only holds its own items. A change in between is
+            // picked up by the page, as with paging the full lists.
+            Matches<?> matches = parts ? Inventory.searchParts(name) : Inventory.searchProducts(name);
+            total = matches.count();
+            page = matches.page(offset, limit);
+        }
+        else {
+            total = parts ? Inventory.getPartCount() : Inventory.getProductCount();
+            page = parts ? Inventory.getPartsPage(offset, limit) : Inventory.getProductsPage(offset, limit);
+        }
+
+        try (JsonWriter out = new JsonWriter(exchange, 200)) {
+            out.text.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"items\":[");
+            writeItems(out, page);
+            out.text.append("]}");
+        }
+    }
+
+    // The conditions of a Part search other than name, or null if there are none
+    private static PartQuery partQuery(Map<String, String> fields) {
+        PartQuery query = new PartQuery();
+        boolean any = false;
+
+        String type = fields.get("type");
+        if (type != null) {
+            if (type.equals("InHouse"))
+                query.inHouse();
+            else if (type.equals("Outsourced"))
+                query.outsourced();
+            else
+                throw new IllegalArgumentException("Type must be InHouse or Outsourced.");
+            any = true;
+        }
+        if (fields.containsKey("companyName")) {
+            query.companyName(fields.get("companyName"));
+            any = true;
+        }
+        if (fields.containsKey("machineId")) {
+            query.machineId(Edits.parseInt(fields.get("machineId")));
+            any = true;
+        }
+        if (fields.containsKey("minPrice") || fields.containsKey("maxPrice")) {
+            String minPrice = fields.get("minPrice");
+            String maxPrice = fields.get("maxPrice");
+            query.priceBetween(minPrice == null ? -Double.MAX_VALUE : Edits.parseDouble(minPrice),
+                    maxPrice == null ? Double.MAX_VALUE : Edits.parseDouble(maxPrice));
+            any = true;
+        }
+        if (fields.containsKey("minStock") || fields.containsKey("maxStock")) {
+            String minStock = fields.get("minStock");
+            String maxStock = fields.get("maxStock");
+            query.stockBetween(minStock == null ? Integer.MIN_VALUE : Edits.parseInt(minStock),
+                    maxStock == null ? Integer.MAX_VALUE : Edits.parseInt(maxStock));
+            any = true;
+        }
+        if (Boolean.parseBoolean(fields.get("belowMin"))) {
+            query.belowMin();
+            any = true;
+        }
+
+        return any ? query : null;
+    }
+
+    private void add(HttpExchange exchange, boolean parts, Map<String, String> fields) throws IOException {
+        Object item;
+        if (parts) {
+            Part part = Edits.editPart(null, 0, fields);
+            Inventory.addParts(List.of(part));
+            item = part;
+        }
+        else {
+            Product product = Edits.editProduct(null, 0, fields);
+            Inventory.addProducts(List.of(product));
+            item = product;
+        }
+
+        try (JsonWriter out = new JsonWriter(exchange, 201)) {
+            writeItem(out, item);
+        }
+    }
+
+    private void get(HttpExchange exchange, boolean parts, int id) throws IOException {
+        Object item = parts ? Inventory.lookupPart(id) : Inventory.lookupProduct(id);
+        if (item == null)
+            throw new ServiceError(404, parts ? "No such part exists." : "No such product exists.");
+
+        try (JsonWriter out = new JsonWriter(exchange, 200)) {
+            writeItem(out, item);
+        }
+    }
+
+    private void update(HttpExchange exchange, boolean parts, int id, Map<String, String> fields) throws IOException {
+        Object item;
+        if (parts) {
+            Part current = Inventory.lookupPart(id);
+            if (current == null)
+                throw new ServiceError(404, "No such part exists.");
+            Part part = Edits.editPart(current, id, fields);
+            // Unless the stock is being set, keep the stock as it is when the Part is replaced, not as it was read
+            if (fields.containsKey("stock"))
+                Inventory.updateParts(Map.of(id, part));
+            else if (!Inventory.updatePartKeepingStock(id, part))
+                throw new ServiceError(404, "No such part exists.");
+            item = part;
+        }
+        else {
+            Product current = Inventory.lookupProduct(id);
+            if (current == null)
+                throw new ServiceError(404, "No such product exists.");
+            Product product = Edits.editProduct(current, id, fields);
+            if (fields.containsKey("stock"))
+                Inventory.updateProducts(Map.of(id, product));
+            else if (!Inventory.updateProductKeepingStock(id, product))
+                throw new ServiceError(404, "No such product exists.");
+            item = product;
+        }
+
+        try (JsonWriter out = new JsonWriter(exchange, 200)) {
+            writeItem(out, item);
+        }
+    }
+
+    private void delete(HttpExchange exchange, boolean parts, int id) throws IOException {
+        boolean deleted;
+        if (parts) {
+            // Inventory keeps a Part that is still associated with a Product
+            deleted = Inventory.deletePartById(id) != null;
+            if (!deleted && Inventory.isPartUsed(id))
+                throw new ServiceError(409, "Part " + id + " is used by a product.");
+        }
+        else
+            deleted = Inventory.deleteProductById(id) != null;
+
+        if (!deleted)
+            throw new ServiceError(404, parts ? "No such part exists." : "No such product exists.");
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void adjustStock(HttpExchange exchange, boolean parts, int id, Map<String, String> fields)
+            throws IOException {
+        if (!fields.containsKey("delta"))
+            throw new IllegalArgumentException("Missing field delta.");
+        int delta = Edits.parseInt(fields.get("delta"));
+
+        boolean adjusted = parts ? Inventory.adjustPartStock(id, delta) : Inventory.adjustProductStock(id, delta);
+        Object item = parts ? Inventory.lookupPart(id) : Inventory.lookupProduct(id);
+        if (item == null)
+            throw new ServiceError(404, parts ? "No such part exists." : "No such product exists.");
+        if (!adjusted)
+            throw new ServiceError(409, "Inventory cannot be less than Min or greater than Max.");
+
+        try (JsonWriter out = new JsonWriter(exchange, 200)) {
+            writeItem(out, item);
+        }
+    }
+
+    // The Products using a Part, or the associated Parts of a Product
+    private void related(HttpExchange exchange, boolean parts, int id) throws IOException {
+        List<?> items;
+        if (parts) {
+            if (Inventory.lookupPart(id) == null)
+                throw new ServiceError(404, "No such part exists.");
+            items = Inventory.lookupProductsUsingPart(id);
+        }
+        else {
+            Product product = Inventory.lookupProduct(id);
+            if (product == null)
+                throw new ServiceError(404, "No such product exists.");
+            items = product.getAllAssociatedParts();
+        }
+
+        try (JsonWriter out = new JsonWriter(exchange, 200)) {
+            out.text.append("{\"total\":").append(items.size()).append(",\"offset\":0,\"items\":[");
+            writeItems(out, items);
+            out.text.append("]}");
+        }
+    }
+
+    private void listAlerts(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") || !exchange.getRequestURI().getPath().equals("/alerts"))
+                throw new ServiceError(404, "Not found.");
+
+            List<StockAlert> current = alerts.getPartAlerts();
+            current.addAll(alerts.getProductAlerts());
+            try (JsonWriter out = new JsonWriter(exchange, 200)) {
+                out.text.append("{\"total\":").append(current.size()).append(",\"offset\":0,\"items\":[");
+                for (int i = 0; i < current.size(); i++) {
+                    StockAlert alert = current.get(i);
+                    out.text.append(i == 0 ? "" : ",").append("{\"type\":\"")
+                            .append(alert.isPart() ? "Part" : "Product").append("\",\"id\":").append(alert.getId())
+                            .append(",\"name\":");
+                    InventoryExporter.appendJsonString(out.text, alert.getName());
+                    out.text.append(",\"level\":\"").append(alert.getLevel()).append("\",\"stock\":")
+                            .append(alert.getStock()).append(",\"min\":").append(alert.getMin())
+                            .append(",\"max\":").append(alert.getMax()).append('}');
+                    out.flushIfFull();
+                }
+                out.text.append("]}");
+            }
+        } catch (ServiceError e) {
+            error(exchange, e.status, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void showValuation(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") || !exchange.getRequestURI().getPath().equals("/valuation"))
+                throw new ServiceError(404, "Not found.");
+
+            InventoryValuation valuation = Inventory.getValuation();
+            try (JsonWriter out = new JsonWriter(exchange, 200)) {
+                out.text.append("{\"inHouse\":").append(valuation.getInHouseValue()).append(",\"outsourced\":")
+                        .append(valuation.getOutsourcedValue()).append(",\"parts\":")
+                        .append(valuation.getPartsValue()).append(",\"products\":")
+                        .append(valuation.getProductsValue()).append(",\"total\":")
+                        .append(valuation.getTotalValue()).append(",\"companies\":{");
+                String separator = "";
+                for (String companyName : valuation.getCompanyNames()) {
+                    out.text.append(separator);
+                    InventoryExporter.appendJsonString(out.text, companyName);
+                    out.text.append(':').append(valuation.getCompanyValue(companyName));
+                    separator = ",";
+                    out.flushIfFull();
+                }
+                out.text.append("}}");
+            }
+        } catch (ServiceError e) {
+            error(exchange, e.status, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void writeItems(JsonWriter out, List<?> items) throws IOException {
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0)
+                out.text.append(',');
+            writeItem(out, items.get(i));
+            out.flushIfFull();
+        }
+    }
+
+    private static void writeItem(JsonWriter out, Object item) {
+        if (item instanceof Part) {
+            InventoryExporter.appendJson(out.text, (Part) item);
+            return;
+        }
+
+        InventoryExporter.appendJson(out.text, (Product) item);
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) {
+        try (JsonWriter out = new JsonWriter(exchange, status)) {
+            out.text.append("{\"error\":");
+            InventoryExporter.appendJsonString(out.text, message == null ? "" : message.trim());
+            out.text.append('}');
+        } catch (IOException e) {
+            // The response was already started or the client went away; there is no one left to tell
+        }
+    }
+
+    // Reads the query parameters and, for a form body, the form fields
+    private static Map<String, String> fields(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), fields);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+            parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), fields);
+        return fields;
+    }
+
+    private static void parseForm(String form, Map<String, String> fields) {
+        if (form == null || form.isEmpty())
+            return;
+
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty())
+                continue;
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            fields.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    // Virtual threads when the runtime has them, otherwise a fixed pool, since the work is short and CPU bound
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()),
+                    runnable -> new Thread(runnable, "inventory-http-" + count.incrementAndGet()));
+        }
+    }
+
+    // A failed request with the status to report
+    private static class ServiceError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ServiceError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Writes a chunked JSON response, sending the text built so far whenever it reaches CHUNK_SIZE
+    private static class JsonWriter implements Closeable {
+        final StringBuilder text = new StringBuilder(CHUNK_SIZE + 1024);
+        private final OutputStream body;
+
+        JsonWriter(HttpExchange exchange, int status) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, 0);
+            body = exchange.getResponseBody();
+        }
+
+        void flushIfFull() throws IOException {
+            if (text.length() >= CHUNK_SIZE)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            body.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            text.setLength(0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            body.close();
+        }
+    }
+}
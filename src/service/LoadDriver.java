@@ -0,0 +1,172 @@
+package service;
+
+import model.InHouse;
+import model.Inventory;
+import model.Part;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load test for InventoryService.
+ *
+ * This class starts the service on a free port over an in-memory Inventory of Parts and has many clients send
+ * requests to it at once, each from its own thread, all starting together. Each client sends a mix of requests:
+ * half look up a Part by ID, three in ten adjust a Part's stock by 1 or -1, one in ten searches for Parts below
+ * min, and one in ten renames a Part with PUT, which must keep the stock adjusted meanwhile.
+ *
+ * <p> At the end the driver prints the number of responses with each status, the throughput and the latency
+ * percentiles. It then checks that every Part's stock equals its starting stock plus the adjustments that were
+ * accepted, so a lost update shows up as a failure. It exits with status 1 if that check fails or a request got a
+ * 5xx status or no response.
+ * <pre>
+ * java service.LoadDriver [CLIENTS] [REQUESTS_PER_CLIENT] [PARTS]
+ * </pre>
+ * The defaults are 2000 clients, 50 requests each and 10000 Parts. </p>
+ */
+public class LoadDriver {
+    private static final int START_STOCK = 1_000_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String base;
+    private final int partCount;
+    // Part ID - 1 -> sum of the accepted stock adjustments
+    private final AtomicLongArray accepted;
+    private final Map<Integer, Integer> statuses = new ConcurrentHashMap<>();
+
+    private LoadDriver(int port, int partCount) {
+        this.base = "http://localhost:" + port;
+        this.partCount = partCount;
+        this.accepted = new AtomicLongArray(partCount);
+    }
+
+    /**
+     * Main method for the load test.
+     *
+     * @param args The number of clients, the number of requests each sends and the number of Parts
+     * @throws IOException If the service cannot be started
+     * @throws InterruptedException If the driver is interrupted while the clients run
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = args.length > 0 ? Edits.parseInt(args[0]) : 2000;
+        int requests = args.length > 1 ? Edits.parseInt(args[1]) : 50;
+        int partCount = args.length > 2 ? Edits.parseInt(args[2]) : 10000;
+
+        // As in BatchMain --serve, so idle keep-alive connections are not closed under the clients
+        // (see InventoryService)
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null)
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+
+        List<Part> parts = new ArrayList<>(partCount);
+        for (int id = 1; id <= partCount; id++)
+            parts.add(new InHouse(id, "Part " + id, 1.25, START_STOCK, START_STOCK - 10, 2 * START_STOCK, id % 100));
+        Inventory.addParts(parts);
+
+        InventoryService service = new InventoryService(0);
+        service.start();
+        boolean passed;
+        try {
+            passed = new LoadDriver(service.getPort(), partCount).run(clients, requests);
+        } finally {
+            service.stop(5);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Runs the clients, prints the results and checks the stock. Returns whether the run passed.
+    private boolean run(int clients, int requests) throws InterruptedException {
+        long[][] latencies = new long[clients][requests];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int clientNumber = c;
+            threads[c] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Random random = new Random(clientNumber);
+                for (int r = 0; r < requests; r++)
+                    latencies[clientNumber][r] = send(random);
+            }, "load-client-" + c);
+            threads[c].start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        long elapsed = System.nanoTime() - began;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println(clients + " clients x " + requests + " requests = " + all.length + " in "
+                + elapsed / 1_000_000 + " ms (" + (long) (all.length / (elapsed / 1e9)) + " requests/s)");
+        System.out.println("Statuses: " + new TreeMap<>(statuses));
+        System.out.println("Latency ms: p50 " + millis(all, 0.50) + ", p90 " + millis(all, 0.90) + ", p99 "
+                + millis(all, 0.99) + ", max " + millis(all, 1.0));
+
+        int lost = 0;
+        for (int id = 1; id <= partCount; id++) {
+            if (Inventory.lookupPart(id).getStock() != START_STOCK + accepted.get(id - 1))
+                lost++;
+        }
+        System.out.println("Parts whose stock does not match the accepted adjustments: " + lost);
+
+        boolean failed = statuses.keySet().stream().anyMatch(status -> status < 0 || status >= 500);
+        return lost == 0 && !failed;
+    }
+
+    // Sends one request of the mix and returns its latency in nanoseconds
+    private long send(Random random) {
+        int id = 1 + random.nextInt(partCount);
+        int kind = random.nextInt(10);
+        int delta = random.nextBoolean() ? 1 : -1;
+
+        HttpRequest.Builder request;
+        if (kind < 5)
+            request = HttpRequest.newBuilder(URI.create(base + "/parts/" + id)).GET();
+        else if (kind < 8)
+            request = HttpRequest.newBuilder(URI.create(base + "/parts/" + id + "/stock?delta=" + delta))
+                    .POST(HttpRequest.BodyPublishers.noBody());
+        else if (kind < 9)
+            request = HttpRequest.newBuilder(URI.create(base + "/parts?belowMin=true&limit=10")).GET();
+        else
+            request = HttpRequest.newBuilder(URI.create(base + "/parts/" + id + "?name=Renamed+" + random.nextInt()))
+                    .PUT(HttpRequest.BodyPublishers.noBody());
+
+        long began = System.nanoTime();
+        int status;
+        try {
+            status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = -1;
+        }
+        long latency = System.nanoTime() - began;
+
+        if (kind >= 5 && kind < 8 && status == 200)
+            accepted.addAndGet(id - 1, delta);
+        statuses.merge(status, 1, Integer::sum);
+        return latency;
+    }
+
+    private static String millis(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return String.format("%.1f", sorted[Math.max(index, 0)] / 1e6);
+    }
+}
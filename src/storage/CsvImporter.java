@@ -0,0 +1,623 @@
+package storage;
+
+import model.BillOfMaterials;
+import model.ErrorAlerts;
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming importer for Parts and Products stored in CSV files.
+ *
+ * This class reads a CSV file in chunks, hands batches of lines to worker threads that parse and validate them, and
+ * adds the valid rows to Inventory one batch at a time, in file order. Only a few batches are in memory at once, so
+ * files of any size can be imported. Rows that fail validation are written, with their line number, to an error file.
+ *
+ * <p> Each row is "type,id,name,price,stock,min,max,extra". The type is InHouse, Outsourced or Product. The extra
+ * column holds the machine ID of an InHouse Part, the company name of an Outsourced Part, or a Product's associated
+ * Parts separated by semicolons, each as "id:quantity" or just the ID for a quantity of 1. A Part listed more than
+ * once gets the sum of its quantities. A blank ID gives the row a new ID; any other ID must be positive. Fields
+ * may be quoted, with "" for a quote inside, but may not contain line breaks. A Product can only list Parts that
+ * were imported before it or were already in Inventory. A first line starting with "type" is treated as a
+ * header. </p>
+ *
+ * <p> Rows are checked with the same rules as the Add Part and Add Product forms (ErrorAlerts.formValidation). </p>
+ */
+public class CsvImporter {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int batchSize;
+    private final int threads;
+
+    /**
+     * Constructor for CsvImporter.
+     *
+     * This is the constructor for an importer that validates on one worker thread per available processor.
+     */
+    public CsvImporter() {
+        this(10_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for CsvImporter.
+     *
+     * @param batchSize The number of lines validated and added to Inventory together
+     * @param threads The number of worker threads that validate batches
+     */
+    public CsvImporter(int batchSize, int threads) {
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static class Result {
+        private final long imported;
+        private final long rejected;
+
+        Result(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        /**
+         * @return Returns the number of rows added to Inventory
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return Returns the number of rows written to the error file
+         */
+        public long getRejected() {
+            return rejected;
+        }
+    }
+
+    /**
+     * Imports a CSV file into Inventory.
+     *
+     * This method streams the file, validates its rows in parallel and adds the valid ones to Inventory in batches.
+     * Each rejected row is written to the error file as its line number, the reasons it was rejected and the
+     * original line.
+     * @param csv The file to be imported
+     * @param errorFile The file that rejected rows are written to
+     * @return Returns the number of rows imported and rejected
+     * @throws IOException If either file cannot be read or written
+     */
+    public Result importFile(Path csv, Path errorFile) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Deque<Future<ParsedBatch>> inFlight = new ArrayDeque<>();
+        long[] counts = new long[2];
+
+        try (Reader reader = new InputStreamReader(Files.newInputStream(csv), StandardCharsets.UTF_8);
+             BufferedWriter errors = Files.newBufferedWriter(errorFile)) {
+            errors.write("line,errors,row");
+            errors.newLine();
+
+            char[] chunk = new char[CHUNK_SIZE];
+            LineBatch batch = new LineBatch(1);
+            long lineNumber = 1;
+            boolean firstLine = true;
+            int read;
+
+            while ((read = reader.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != '\n')
+                        continue;
+
+                    batch.append(chunk, start, i);
+                    start = i + 1;
+                    if (firstLine && batch.isHeader())
+                        batch = new LineBatch(lineNumber + 1);
+                    else
+                        batch.endLine();
+                    firstLine = false;
+                    lineNumber++;
+
+                    if (batch.count == batchSize) {
+                        submit(workers, inFlight, batch, errors, counts);
+                        batch = new LineBatch(lineNumber);
+                    }
+                }
+                batch.append(chunk, start, read);
+            }
+
+            if (batch.hasPartialLine() && !(firstLine && batch.isHeader()))
+                batch.endLine();
+            if (batch.count > 0)
+                submit(workers, inFlight, batch, errors, counts);
+
+            while (!inFlight.isEmpty())
+                commit(inFlight.removeFirst(), errors, counts);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return new Result(counts[0], counts[1]);
+    }
+
+    // Queues a batch for validation, first committing the oldest batch if enough are in flight
+    private void submit(ExecutorService workers, Deque<Future<ParsedBatch>> inFlight, LineBatch batch,
+                        BufferedWriter errors, long[] counts) throws IOException {
+        if (inFlight.size() >= threads * 2)
+            commit(inFlight.removeFirst(), errors, counts);
+
+        inFlight.addLast(workers.submit(() -> parse(batch)));
+    }
+
+    // Adds a validated batch to Inventory and writes its rejected rows. Runs on the calling thread, in file order.
+    private static void commit(Future<ParsedBatch> future, BufferedWriter errors, long[] counts) throws IOException {
+        ParsedBatch parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+
+        List<ParsedBatch.Row<Part>> parts = new ArrayList<>(parsed.parts.size());
+        for (ParsedBatch.Row<Part> row : parsed.parts) {
+            if (row.item.getId() > 0 && Inventory.lookupPart(row.item.getId()) != null)
+                parsed.reject(row.line, row.text, "Part ID is already used.\n");
+            else
+                parts.add(row);
+        }
+        counts[0] += addParts(parts, parsed);
+
+        List<ParsedBatch.Row<Product>> products = new ArrayList<>(parsed.products.size());
+        rows:
+        for (ParsedBatch.Row<Product> row : parsed.products) {
+            if (row.item.getId() > 0 && Inventory.lookupProduct(row.item.getId()) != null) {
+                parsed.reject(row.line, row.text, "Product ID is already used.\n");
+                continue;
+            }
+            // The Product was built with its bill of materials, so the whole batch is added under one lock
+            BillOfMaterials bom = row.item.getBillOfMaterials();
+            for (int i = 0; i < bom.size(); i++) {
+                int partId = bom.getPartId(i);
+                if (Inventory.lookupPart(partId) == null) {
+                    parsed.reject(row.line, row.text, "Associated part " + partId + " does not exist.\n");
+                    continue rows;
+                }
+            }
+            products.add(row);
+        }
+        counts[0] += addProducts(products, parsed);
+
+        for (String error : parsed.errors) {
+            errors.write(error);
+            errors.newLine();
+        }
+        counts[1] += parsed.errors.size();
+    }
+
+    /*
+     * Adds the batch's Parts to Inventory in one call. If that fails because the batch collides with itself or with
+     * a concurrent edit, adds them one by one and rejects the ones that fail.
+     */
+    private static int addParts(List<ParsedBatch.Row<Part>> rows, ParsedBatch parsed) {
+        List<Part> parts = new ArrayList<>(rows.size());
+        for (ParsedBatch.Row<Part> row : rows)
+            parts.add(row.item);
+
+        try {
+            Inventory.addParts(parts);
+            return parts.size();
+        } catch (IllegalArgumentException e) {
+            int added = 0;
+            for (ParsedBatch.Row<Part> row : rows) {
+                try {
+                    Inventory.addParts(List.of(row.item));
+                    added++;
+                } catch (IllegalArgumentException rowError) {
+                    parsed.reject(row.line, row.text, rowError.getMessage());
+                }
+            }
+            return added;
+        }
+    }
+
+    // Adds the batch's Products to Inventory the same way addParts does
+    private static int addProducts(List<ParsedBatch.Row<Product>> rows, ParsedBatch parsed) {
+        List<Product> products = new ArrayList<>(rows.size());
+        for (ParsedBatch.Row<Product> row : rows)
+            products.add(row.item);
+
+        try {
+            Inventory.addProducts(products);
+            return products.size();
+        } catch (IllegalArgumentException e) {
+            int added = 0;
+            for (ParsedBatch.Row<Product> row : rows) {
+                try {
+                    Inventory.addProducts(List.of(row.item));
+                    added++;
+                } catch (IllegalArgumentException rowError) {
+                    parsed.reject(row.line, row.text, rowError.getMessage());
+                }
+            }
+            return added;
+        }
+    }
+
+    // Runs on a worker thread: splits every line of the batch into fields and validates it
+    private static ParsedBatch parse(LineBatch batch) {
+        ParsedBatch parsed = new ParsedBatch();
+        FieldSplitter fields = new FieldSplitter(batch.text);
+
+        for (int line = 0; line < batch.count; line++) {
+            int start = line == 0 ? 0 : batch.lineEnds[line - 1];
+            int end = batch.lineEnds[line];
+            long lineNumber = batch.firstLine + line;
+
+            if (end > start && batch.text[end - 1] == '\r')
+                end--;
+            if (end == start)  // Skip blank lines
+                continue;
+
+            parseRow(batch.text, start, end, lineNumber, fields, parsed);
+        }
+
+        return parsed;
+    }
+
+    private static void parseRow(char[] text, int start, int end, long lineNumber, FieldSplitter fields,
+                                 ParsedBatch parsed) {
+        if (!fields.split(start, end) || fields.count != 8) {
+            parsed.reject(lineNumber, new String(text, start, end - start), "Row must have 8 fields.\n");
+            return;
+        }
+
+        StringBuilder errorMessage = new StringBuilder();
+        String type = fields.string(0);
+        String name = fields.string(2);
+
+        long id = fields.isEmpty(1) ? 0 : fields.parseInt(1);
+        if (id == Long.MIN_VALUE)
+            errorMessage.append("ID must be a valid integer.\n");
+        else if (!fields.isEmpty(1) && id <= 0)
+            errorMessage.append("ID must be positive, or blank for a new ID.\n");
+
+        if (name.isBlank())
+            errorMessage.append("Name field must contain data.\n");
+
+        long stock = fields.parseInt(4);
+        if (stock == Long.MIN_VALUE)
+            errorMessage.append("Inventory must be a valid integer.\n");
+
+        double price = fields.parseDouble(3);
+        errorMessage.append(ErrorAlerts.priceValidation(price));
+
+        long max = fields.parseInt(6);
+        if (max == Long.MIN_VALUE)
+            errorMessage.append("Max must be a valid integer.\n");
+
+        long min = fields.parseInt(5);
+        if (min == Long.MIN_VALUE)
+            errorMessage.append("Min must be a valid integer.\n");
+
+        if (stock != Long.MIN_VALUE && max != Long.MIN_VALUE && min != Long.MIN_VALUE)
+            errorMessage.append(ErrorAlerts.rangeValidation((int) stock, (int) max, (int) min));
+
+        Part part = null;
+        Product product = null;
+
+        switch (type) {
+            case "InHouse":
+                long machineId = fields.parseInt(7);
+                if (machineId == Long.MIN_VALUE)
+                    errorMessage.append("Machine ID must be a valid integer.\n");
+                else if (errorMessage.length() == 0)
+                    part = new InHouse((int) id, name, price, (int) stock, (int) min, (int) max, (int) machineId);
+                break;
+            case "Outsourced":
+                String companyName = fields.string(7);
+                if (companyName.isBlank())
+                    errorMessage.append("Company Name must contain data.\n");
+                else if (errorMessage.length() == 0)
+                    part = new Outsourced((int) id, name, price, (int) stock, (int) min, (int) max, companyName);
+                break;
+            case "Product":
+                BillOfMaterials bom = fields.parseBillOfMaterials(7);
+                if (bom == null)
+                    errorMessage.append("Associated parts must be IDs or ID:quantity separated by ';', with "
+                            + "quantities of at least 1.\n");
+                else if (errorMessage.length() == 0)
+                    product = new Product((int) id, name, price, (int) stock, (int) min, (int) max, bom);
+                break;
+            default:
+                errorMessage.append("Type must be InHouse, Outsourced or Product.\n");
+        }
+
+        String line = new String(text, start, end - start);
+        if (errorMessage.length() > 0)
+            parsed.reject(lineNumber, line, errorMessage.toString());
+        else if (part != null)
+            parsed.parts.add(new ParsedBatch.Row<>(lineNumber, line, part));
+        else
+            parsed.products.add(new ParsedBatch.Row<>(lineNumber, line, product));
+    }
+
+    // Quotes a field for the error file
+    private static String quote(String field) {
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    // Lines read from the file, stored back to back in one array
+    private static class LineBatch {
+        final long firstLine;
+        char[] text = new char[4096];
+        int length;
+        int[] lineEnds = new int[256];
+        int count;
+
+        LineBatch(long firstLine) {
+            this.firstLine = firstLine;
+        }
+
+        void append(char[] source, int from, int to) {
+            int needed = length + to - from;
+            if (needed > text.length)
+                text = Arrays.copyOf(text, Math.max(needed, text.length * 2));
+            System.arraycopy(source, from, text, length, to - from);
+            length = needed;
+        }
+
+        void endLine() {
+            if (count == lineEnds.length)
+                lineEnds = Arrays.copyOf(lineEnds, count * 2);
+            lineEnds[count++] = length;
+        }
+
+        boolean hasPartialLine() {
+            return length > (count == 0 ? 0 : lineEnds[count - 1]);
+        }
+
+        // Whether the batch holds only an unfinished first line that is a header row
+        boolean isHeader() {
+            return count == 0 && length >= 4 && String.valueOf(text, 0, 4).equalsIgnoreCase("type");
+        }
+    }
+
+    // The result of validating one batch
+    private static class ParsedBatch {
+        final List<Row<Part>> parts = new ArrayList<>();
+        final List<Row<Product>> products = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+
+        void reject(long lineNumber, String line, String errorMessage) {
+            errors.add(lineNumber + "," + quote(errorMessage.trim().replace('\n', ' ')) + "," + line);
+        }
+
+        static class Row<T> {
+            final long line;
+            final String text;
+            final T item;
+
+            Row(long line, String text, T item) {
+                this.line = line;
+                this.text = text;
+                this.item = item;
+            }
+        }
+    }
+
+    /*
+     * Finds the fields of a line and parses numbers straight from the characters, without creating Strings.
+     * Numbers that fail to parse come back as Long.MIN_VALUE or NaN.
+     */
+    private static class FieldSplitter {
+        private final char[] text;
+        int count;
+        private final int[] starts = new int[8];
+        private final int[] ends = new int[8];
+        private final boolean[] quoted = new boolean[8];
+
+        FieldSplitter(char[] text) {
+            this.text = text;
+        }
+
+        // Returns false if the line has more than 8 fields or an unterminated quote
+        boolean split(int start, int end) {
+            count = 0;
+            int i = start;
+
+            while (true) {
+                if (count == starts.length)
+                    return false;
+
+                if (i < end && text[i] == '"') {
+                    int fieldStart = ++i;
+                    while (true) {
+                        if (i >= end)
+                            return false;
+                        if (text[i] == '"') {
+                            if (i + 1 < end && text[i + 1] == '"')
+                                i += 2;
+                            else
+                                break;
+                        }
+                        else
+                            i++;
+                    }
+                    starts[count] = fieldStart;
+                    ends[count] = i;
+                    quoted[count++] = true;
+                    i++;  // Closing quote
+                }
+                else {
+                    int fieldStart = i;
+                    while (i < end && text[i] != ',')
+                        i++;
+                    starts[count] = fieldStart;
+                    ends[count] = i;
+                    quoted[count++] = false;
+                }
+
+                if (i >= end)
+                    return true;
+                if (text[i] != ',')
+                    return false;
+                i++;
+            }
+        }
+
+        boolean isEmpty(int field) {
+            return starts[field] == ends[field];
+        }
+
+        String string(int field) {
+            String value = new String(text, starts[field], ends[field] - starts[field]);
+            return quoted[field] ? value.replace("\"\"", "\"") : value;
+        }
+
+        long parseInt(int field) {
+            return parseInt(starts[field], ends[field]);
+        }
+
+        private long parseInt(int start, int end) {
+            int i = trimStart(start, end);
+            end = trimEnd(i, end);
+            boolean negative = false;
+
+            if (i < end && (text[i] == '-' || text[i] == '+'))
+                negative = text[i++] == '-';
+            if (i == end)
+                return Long.MIN_VALUE;
+
+            long value = 0;
+            for (; i < end; i++) {
+                char c = text[i];
+                if (c < '0' || c > '9')
+                    return Long.MIN_VALUE;
+                value = value * 10 + (c - '0');
+                if (value > (long) Integer.MAX_VALUE + 1)
+                    return Long.MIN_VALUE;
+            }
+
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+
+        double parseDouble(int field) {
+            int i = trimStart(starts[field], ends[field]);
+            int end = trimEnd(i, ends[field]);
+            boolean negative = false;
+
+            if (i < end && (text[i] == '-' || text[i] == '+'))
+                negative = text[i++] == '-';
+
+            long digits = 0;
+            int scale = 0;
+            int digitCount = 0;
+            boolean fraction = false;
+
+            for (; i < end; i++) {
+                char c = text[i];
+                if (c == '.' && !fraction)
+                    fraction = true;
+                else if (c >= '0' && c <= '9' && digitCount < 15) {
+                    digits = digits * 10 + (c - '0');
+                    digitCount++;
+                    if (fraction)
+                        scale++;
+                }
+                else
+                    return parseDoubleSlow(field);  // Exponents, very long numbers, or not a number
+            }
+
+            if (digitCount == 0)
+                return Double.NaN;
+
+            double value = scale == 0 ? digits : digits / Math.pow(10, scale);
+            return negative ? -value : value;
+        }
+
+        // Handles what the fast path does not, at the cost of a String
+        private double parseDoubleSlow(int field) {
+            try {
+                return Double.parseDouble(string(field).trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        // Parses "1;2:4;3", returning null if an ID or quantity is not an integer or a quantity is less than 1
+        BillOfMaterials parseBillOfMaterials(int field) {
+            int start = starts[field];
+            int end = ends[field];
+            if (trimStart(start, end) == end)
+                return BillOfMaterials.of(new int[0], new int[0]);
+
+            int[] ids = new int[8];
+            int[] quantities = new int[8];
+            int count = 0;
+            while (true) {
+                int next = start;
+                int colon = -1;
+                while (next < end && text[next] != ';') {
+                    if (text[next] == ':' && colon < 0)
+                        colon = next;
+                    next++;
+                }
+
+                long id = parseInt(start, colon < 0 ? next : colon);
+                long quantity = colon < 0 ? 1 : parseInt(colon + 1, next);
+                if (id == Long.MIN_VALUE || quantity < 1)
+                    return null;
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    quantities = Arrays.copyOf(quantities, count * 2);
+                }
+                ids[count] = (int) id;
+                quantities[count++] = (int) quantity;
+
+                if (next == end) {
+                    try {
+                        return BillOfMaterials.of(Arrays.copyOf(ids, count), Arrays.copyOf(quantities, count));
+                    } catch (ArithmeticException e) {
+                        return null;  // More units in total than an int holds
+                    }
+                }
+                start = next + 1;
+            }
+        }
+
+        private int trimStart(int start, int end) {
+            while (start < end && text[start] == ' ')
+                start++;
+            return start;
+        }
+
+        private int trimEnd(int start, int end) {
+            while (end > start && text[end - 1] == ' ')
+                end--;
+            return end;
+        }
+    }
+}
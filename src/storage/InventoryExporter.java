@@ -0,0 +1,322 @@
+package storage;
+
+import model.BillOfMaterials;
+import model.InHouse;
+import model.Inventory;
+import model.InventorySnapshot;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming export of Inventory to CSV or JSON lines.
+ *
+ * This class writes every Part and then every Product in Inventory to a file, one row per line. Each row is built in
+ * a reused buffer and encoded straight into a buffered FileChannel, so the whole document is never held in memory.
+ * The export reads from a snapshot of Inventory, so edits can continue while it runs.
+ *
+ * <p> The CSV format is the one read by CsvImporter, so an exported file can be imported again. JSON lines hold one
+ * object per line with the fields of the Part or Product, plus "machineId", "companyName", or a Product's
+ * "materialCost", "margin" and "associatedParts", which lists each associated Part once as {"id":..,"quantity":..}.
+ * In CSV the associated Parts are written as "id:quantity", or just the ID when the quantity is 1, separated by
+ * semicolons. A Product's material cost is worked out from the Parts in the snapshot, like the rest of the row. A
+ * number that is not finite, which JSON cannot hold, is written as null. A lone UTF-16 surrogate in a name, which
+ * UTF-8 cannot encode, is written as '?' instead of failing the export halfway through the file. </p>
+ */
+public class InventoryExporter {
+    private InventoryExporter() {
+    }
+
+    /**
+     * Exports Inventory as CSV.
+     *
+     * @param path The file to be written
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportCsv(Path path) throws IOException {
+        InventorySnapshot snapshot = Inventory.snapshot();
+
+        try (RowWriter out = new RowWriter(path)) {
+            out.row.append("type,id,name,price,stock,min,max,extra");
+            out.endRow();
+
+            List<Part> parts = snapshot.getParts();
+            for (int i = 0; i < parts.size(); i++) {
+                Part part = parts.get(i);
+                StringBuilder row = out.row;
+                row.append(part instanceof Outsourced ? "Outsourced" : "InHouse").append(',').append(part.getId())
+                        .append(',');
+                appendCsvField(row, part.getName());
+                appendFields(row.append(','), part.getPrice(), snapshot.getPartStock(i), part.getMin(), part.getMax(),
+                        ',');
+                row.append(',');
+                if (part instanceof Outsourced)
+                    appendCsvField(row, ((Outsourced) part).getCompanyName());
+                else
+                    row.append(((InHouse) part).getMachineId());
+                out.endRow();
+            }
+
+            List<Product> products = snapshot.getProducts();
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                StringBuilder row = out.row;
+                row.append("Product,").append(product.getId()).append(',');
+                appendCsvField(row, product.getName());
+                appendFields(row.append(','), product.getPrice(), snapshot.getProductStock(i), product.getMin(),
+                        product.getMax(), ',');
+                row.append(',');
+                BillOfMaterials bom = snapshot.getBillOfMaterials(i);
+                for (int j = 0; j < bom.size(); j++) {
+                    row.append(j == 0 ? "" : ";").append(bom.getPartId(j));
+                    if (bom.getQuantity(j) > 1)
+                        row.append(':').append(bom.getQuantity(j));
+                }
+                out.endRow();
+            }
+        }
+    }
+
+    /**
+     * Exports Inventory as JSON lines.
+     *
+     * @param path The file to be written
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportJsonLines(Path path) throws IOException {
+        InventorySnapshot snapshot = Inventory.snapshot();
+
+        try (RowWriter out = new RowWriter(path)) {
+            List<Part> parts = snapshot.getParts();
+            for (int i = 0; i < parts.size(); i++) {
+                appendJson(out.row, parts.get(i), snapshot.getPartStock(i));
+                out.endRow();
+            }
+
+            Map<Integer, Part> partsById = new HashMap<>(parts.size() * 2);
+            for (Part part : parts)
+                partsById.put(part.getId(), part);
+
+            List<Product> products = snapshot.getProducts();
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                BillOfMaterials bom = snapshot.getBillOfMaterials(i);
+                long costCents = materialCostCents(bom, partsById);
+                long priceCents = Math.round(product.getPrice() * 100);
+                appendJson(out.row, product, snapshot.getProductStock(i), bom, costCents / 100.0,
+                        (priceCents - costCents) / 100.0);
+                out.endRow();
+            }
+        }
+    }
+
+    /*
+     * The material cost in cents, from the prices of the snapshot's Parts rather than those now in Inventory. As in
+     * Product.getMaterialCost, Parts that are not there count as 0.
+     */
+    private static long materialCostCents(BillOfMaterials bom, Map<Integer, Part> partsById) {
+        long cents = 0;
+        for (int i = 0; i < bom.size(); i++) {
+            Part part = partsById.get(bom.getPartId(i));
+            if (part != null)
+                cents += Math.round(part.getPrice() * 100) * bom.getQuantity(i);
+        }
+        return cents;
+    }
+
+    private static void appendFields(StringBuilder row, double price, int stock, int min, int max, char separator) {
+        row.append(price).append(separator).append(stock).append(separator).append(min).append(separator).append(max);
+    }
+
+    /**
+     * Appends a Part as a JSON object.
+     *
+     * This method writes the object in the same form as the rows of exportJsonLines, without a line break.
+     * @param out The buffer to append to
+     * @param part The Part to be written
+     */
+    public static void appendJson(StringBuilder out, Part part) {
+        appendJson(out, part, part.getStock());
+    }
+
+    private static void appendJson(StringBuilder out, Part part, int stock) {
+        out.append("{\"type\":\"").append(part instanceof Outsourced ? "Outsourced" : "InHouse");
+        appendJsonCommon(out, part.getId(), part.getName(), part.getPrice(), stock, part.getMin(), part.getMax());
+        if (part instanceof Outsourced) {
+            out.append(",\"companyName\":");
+            appendJsonString(out, ((Outsourced) part).getCompanyName());
+        }
+        else
+            out.append(",\"machineId\":").append(((InHouse) part).getMachineId());
+        out.append('}');
+    }
+
+    /**
+     * Appends a Product as a JSON object.
+     *
+     * This method writes the object in the same form as the rows of exportJsonLines, without a line break.
+     * @param out The buffer to append to
+     * @param product The Product to be written
+     */
+    public static void appendJson(StringBuilder out, Product product) {
+        appendJson(out, product, product.getStock(), product.getBillOfMaterials(), product.getMaterialCost(),
+                product.getMargin());
+    }
+
+    private static void appendJson(StringBuilder out, Product product, int stock, BillOfMaterials bom,
+                                   double materialCost, double margin) {
+        out.append("{\"type\":\"Product");
+        appendJsonCommon(out, product.getId(), product.getName(), product.getPrice(), stock, product.getMin(),
+                product.getMax());
+        appendJsonNumber(out.append(",\"materialCost\":"), materialCost);
+        appendJsonNumber(out.append(",\"margin\":"), margin);
+        out.append(",\"associatedParts\":[");
+        for (int j = 0; j < bom.size(); j++) {
+            out.append(j == 0 ? "{\"id\":" : ",{\"id\":").append(bom.getPartId(j)).append(",\"quantity\":")
+                    .append(bom.getQuantity(j)).append('}');
+        }
+        out.append("]}");
+    }
+
+    private static void appendJsonCommon(StringBuilder row, int id, String name, double price, int stock, int min,
+                                         int max) {
+        row.append("\",\"id\":").append(id).append(",\"name\":");
+        appendJsonString(row, name);
+        appendJsonNumber(row.append(",\"price\":"), price);
+        row.append(",\"stock\":").append(stock).append(",\"min\":").append(min).append(",\"max\":").append(max);
+    }
+
+    // JSON has no NaN or Infinity, so those are written as null
+    private static void appendJsonNumber(StringBuilder out, double value) {
+        if (Double.isFinite(value))
+            out.append(value);
+        else
+            out.append("null");
+    }
+
+    // Quotes the field if it contains a comma, a quote or surrounding spaces
+    private static void appendCsvField(StringBuilder row, String field) {
+        boolean needsQuotes = !field.isEmpty() && (field.charAt(0) == ' ' || field.charAt(field.length() - 1) == ' ');
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            char c = field.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+
+        if (!needsQuotes) {
+            row.append(field);
+            return;
+        }
+
+        row.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"')
+                row.append('"');
+            row.append(c == '\r' || c == '\n' ? ' ' : c);  // CsvImporter reads one row per line
+        }
+        row.append('"');
+    }
+
+    /**
+     * Appends a String as a quoted JSON string.
+     *
+     * @param out The buffer to append to
+     * @param value The String to be escaped and quoted
+     */
+    public static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        out.append(String.format("\\u%04x", (int) c));
+                    else
+                        out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    // Encodes rows built in a reused StringBuilder into a buffered FileChannel
+    private static class RowWriter implements AutoCloseable {
+        final StringBuilder row = new StringBuilder(256);
+        private final FileChannel channel;
+        // Replaces what UTF-8 cannot encode, so a bad name cannot leave a truncated file
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(256 * 1024);
+        private char[] chars = new char[256];
+        private CharBuffer charView = CharBuffer.wrap(chars);
+
+        RowWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void endRow() throws IOException {
+            row.append('\n');
+            if (row.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(row.length(), chars.length * 2));
+                charView = CharBuffer.wrap(chars);
+            }
+            row.getChars(0, row.length(), chars, 0);
+            charView.clear().limit(row.length());
+            row.setLength(0);
+
+            while (true) {
+                CoderResult result = encoder.encode(charView, bytes, false);
+                if (!result.isOverflow())
+                    break;
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            bytes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                encoder.encode(CharBuffer.allocate(0), bytes, true);
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
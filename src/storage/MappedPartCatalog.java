@@ -0,0 +1,254 @@
+package storage;
+
+import model.InHouse;
+import model.Outsourced;
+import model.Part;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A read-only catalog of Parts kept off the Java heap in memory-mapped files.
+ *
+ * This class stores Parts as fixed-width records, sorted by ID, in a ".parts" file and their names and company names
+ * in a separate ".names" string heap file. Both files are memory mapped, so opening a catalog of millions of Parts
+ * costs no heap beyond the mappings, and a Part object is only created when a record is read. It is meant for
+ * browsing catalogs too large to load into Inventory; asList() can be handed to a TableView, which only reads the
+ * visible rows. InventoryStore opens one as an optional read-only source of Parts that are not in Inventory.
+ *
+ * <p> Each file is mapped as a single buffer, which limits a catalog to 2 GB of records and 2 GB of names. </p>
+ */
+public class MappedPartCatalog {
+    private static final int MAGIC = 0x50435431;  // "PCT1"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+
+    // Record layout
+    private static final int ID = 0;
+    private static final int STOCK = 4;
+    private static final int MIN = 8;
+    private static final int MAX = 12;
+    private static final int PRICE_CENTS = 16;
+    private static final int NAME_OFFSET = 24;
+    private static final int NAME_LENGTH = 28;
+    private static final int COMPANY_OFFSET = 32;
+    private static final int COMPANY_LENGTH = 36;
+    private static final int MACHINE_ID = 40;
+    private static final int KIND = 44;
+
+    private static final byte IN_HOUSE = 0;
+    private static final byte OUTSOURCED = 1;
+
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer names;
+    private final int size;
+
+    private MappedPartCatalog(MappedByteBuffer records, MappedByteBuffer names, int size) {
+        this.records = records;
+        this.names = names;
+        this.size = size;
+    }
+
+    /**
+     * Writes the given Parts as a new catalog.
+     *
+     * This method sorts the Parts by ID and writes their records and names to base + ".parts" and base + ".names",
+     * replacing any catalog already there.
+     * @param base The path of the catalog, without extension
+     * @param parts The Parts to be stored
+     * @throws IOException If the files cannot be written
+     */
+    public static void write(Path base, Collection<? extends Part> parts) throws IOException {
+        List<Part> sorted = new ArrayList<>(parts);
+        sorted.sort(Comparator.comparingInt(Part::getId));
+
+        try (FileChannel recordFile = FileChannel.open(recordsPath(base), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream nameFile = Files.newOutputStream(namesPath(base))) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(sorted.size()).putLong(0);
+            int nameOffset = 0;
+
+            for (Part part : sorted) {
+                byte[] name = part.getName().getBytes(StandardCharsets.UTF_8);
+                byte[] company = part instanceof Outsourced
+                        ? ((Outsourced) part).getCompanyName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+                if (buffer.remaining() < RECORD_SIZE) {
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                        recordFile.write(buffer);
+                    buffer.clear();
+                }
+
+                int start = buffer.position();
+                buffer.putInt(start + ID, part.getId());
+                buffer.putInt(start + STOCK, part.getStock());
+                buffer.putInt(start + MIN, part.getMin());
+                buffer.putInt(start + MAX, part.getMax());
+                buffer.putLong(start + PRICE_CENTS, Math.round(part.getPrice() * 100));
+                buffer.putInt(start + NAME_OFFSET, nameOffset);
+                buffer.putInt(start + NAME_LENGTH, name.length);
+                buffer.putInt(start + COMPANY_OFFSET, nameOffset + name.length);
+                buffer.putInt(start + COMPANY_LENGTH, company.length);
+                buffer.putInt(start + MACHINE_ID, part instanceof InHouse ? ((InHouse) part).getMachineId() : 0);
+                buffer.putInt(start + KIND, part instanceof Outsourced ? OUTSOURCED : IN_HOUSE);
+                buffer.position(start + RECORD_SIZE);
+
+                nameFile.write(name);
+                nameFile.write(company);
+                nameOffset += name.length + company.length;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining())
+                recordFile.write(buffer);
+        }
+    }
+
+    /**
+     * Opens an existing catalog.
+     *
+     * This method maps the catalog's files into memory. The records are read lazily by the operating system as they
+     * are used. The header is read first, and the file is only mapped if its length matches the number of records
+     * the header gives, so a truncated or foreign file is refused rather than read past its end.
+     * @param base The path of the catalog, without extension
+     * @return Returns the opened catalog
+     * @throws IOException If the files cannot be read or are not a catalog
+     */
+    public static MappedPartCatalog open(Path base) throws IOException {
+        try (FileChannel recordFile = FileChannel.open(recordsPath(base), StandardOpenOption.READ);
+             FileChannel nameFile = FileChannel.open(namesPath(base), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0)
+                read = recordFile.read(header, header.position());
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IOException("Not a part catalog file");
+
+            int size = header.getInt(4);
+            long length = HEADER_SIZE + (long) size * RECORD_SIZE;
+            if (size < 0 || recordFile.size() != length)
+                throw new IOException("Part catalog file should be " + length + " bytes for " + size
+                        + " records but is " + recordFile.size());
+            if (length > Integer.MAX_VALUE || nameFile.size() > Integer.MAX_VALUE)
+                throw new IOException("Part catalog is too large to map");
+
+            MappedByteBuffer records = recordFile.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            MappedByteBuffer names = nameFile.map(FileChannel.MapMode.READ_ONLY, 0, nameFile.size());
+            records.order(ByteOrder.LITTLE_ENDIAN);
+
+            return new MappedPartCatalog(records, names, size);
+        }
+    }
+
+    /**
+     * Getter for size.
+     *
+     * @return Returns the number of Parts in the catalog
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads the Part stored at the given position.
+     *
+     * This method creates a Part from the record at the given position. Positions are in order of ID.
+     * @param index The position of the record
+     * @return Returns a new InHouse or Outsourced Part with the record's fields
+     */
+    public Part get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+
+        int start = HEADER_SIZE + index * RECORD_SIZE;
+        int id = records.getInt(start + ID);
+        String name = readString(records.getInt(start + NAME_OFFSET), records.getInt(start + NAME_LENGTH));
+        double price = records.getLong(start + PRICE_CENTS) / 100.0;
+        int stock = records.getInt(start + STOCK);
+        int min = records.getInt(start + MIN);
+        int max = records.getInt(start + MAX);
+
+        if (records.getInt(start + KIND) == OUTSOURCED) {
+            String companyName = readString(records.getInt(start + COMPANY_OFFSET),
+                    records.getInt(start + COMPANY_LENGTH));
+            return new Outsourced(id, name, price, stock, min, max, companyName);
+        }
+
+        return new InHouse(id, name, price, stock, min, max, records.getInt(start + MACHINE_ID));
+    }
+
+    /**
+     * Finds a Part using the given ID.
+     *
+     * This method binary searches the ID column of the records, so only a few pages of the file are touched.
+     * @param partId The ID of the Part to be looked up
+     * @return Returns the Part with the given ID, or null if not found
+     */
+    public Part lookup(int partId) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = records.getInt(HEADER_SIZE + mid * RECORD_SIZE + ID);
+
+            if (id < partId)
+                low = mid + 1;
+            else if (id > partId)
+                high = mid - 1;
+            else
+                return get(mid);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a read-only List view of the catalog.
+     *
+     * This method returns a List that reads each Part from the mapping when it is accessed. Nothing is copied.
+     * @return Returns a List of the Parts in the catalog, in order of ID
+     */
+    public List<Part> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Part get(int index) {
+                return MappedPartCatalog.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        names.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Path recordsPath(Path base) {
+        return base.resolveSibling(base.getFileName() + ".parts");
+    }
+
+    private static Path namesPath(Path base) {
+        return base.resolveSibling(base.getFileName() + ".names");
+    }
+}
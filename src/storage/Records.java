@@ -0,0 +1,144 @@
+package storage;
+
+import model.BillOfMaterials;
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoding of Parts and Products shared by the storage formats.
+ *
+ * This class writes and reads the fields of Parts and Products with DataOutput and DataInput. A Product's bill of
+ * materials is stored as its distinct Part IDs, each followed by its quantity, and the IDs are checked against
+ * Inventory when the Product is read back. The first version of the formats listed one Part ID per unit instead;
+ * readLegacyProduct still reads it.
+ */
+class Records {
+    private static final byte IN_HOUSE = 0;
+    private static final byte OUTSOURCED = 1;
+
+    private Records() {
+    }
+
+    static void writePart(DataOutput out, Part part) throws IOException {
+        writePart(out, part, part.getStock());
+    }
+
+    // Writes the Part with the given stock, such as the stock recorded in a snapshot
+    static void writePart(DataOutput out, Part part, int stock) throws IOException {
+        out.writeInt(part.getId());
+        out.writeUTF(part.getName());
+        out.writeDouble(part.getPrice());
+        out.writeInt(stock);
+        out.writeInt(part.getMin());
+        out.writeInt(part.getMax());
+
+        if (part instanceof Outsourced) {
+            out.writeByte(OUTSOURCED);
+            out.writeUTF(((Outsourced) part).getCompanyName());
+        }
+        else {
+            out.writeByte(IN_HOUSE);
+            out.writeInt(((InHouse) part).getMachineId());
+        }
+    }
+
+    static Part readPart(DataInput in) throws IOException {
+        int id = in.readInt();
+        String name = in.readUTF();
+        double price = in.readDouble();
+        int stock = in.readInt();
+        int min = in.readInt();
+        int max = in.readInt();
+
+        if (in.readByte() == OUTSOURCED)
+            return new Outsourced(id, name, price, stock, min, max, in.readUTF());
+
+        return new InHouse(id, name, price, stock, min, max, in.readInt());
+    }
+
+    static void writeProduct(DataOutput out, Product product) throws IOException {
+        writeProductFields(out, product, product.getStock());
+        writeBillOfMaterials(out, product.getBillOfMaterials());
+    }
+
+    // Writes everything but the bill of materials, which the caller writes next
+    static void writeProductFields(DataOutput out, Product product, int stock) throws IOException {
+        out.writeInt(product.getId());
+        out.writeUTF(product.getName());
+        out.writeDouble(product.getPrice());
+        out.writeInt(stock);
+        out.writeInt(product.getMin());
+        out.writeInt(product.getMax());
+    }
+
+    static Product readProduct(DataInput in) throws IOException {
+        Product product = readProductFields(in);
+        readBillOfMaterials(in, product);
+
+        return product;
+    }
+
+    // Reads a Product written in the first version of the formats
+    static Product readLegacyProduct(DataInput in) throws IOException {
+        Product product = readProductFields(in);
+        readLegacyAssociatedParts(in, product);
+
+        return product;
+    }
+
+    private static Product readProductFields(DataInput in) throws IOException {
+        return new Product(in.readInt(), in.readUTF(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    static void writeBillOfMaterials(DataOutput out, BillOfMaterials bom) throws IOException {
+        out.writeInt(bom.size());
+        for (int i = 0; i < bom.size(); i++) {
+            out.writeInt(bom.getPartId(i));
+            out.writeInt(bom.getQuantity(i));
+        }
+    }
+
+    // Gives the Product the bill of materials in the input in one step. IDs no longer in Inventory are skipped.
+    static void readBillOfMaterials(DataInput in, Product product) throws IOException {
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException("Invalid bill of materials size " + count);
+
+        int[] partIds = new int[count];
+        int[] quantities = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int partId = in.readInt();
+            int quantity = in.readInt();
+            if (quantity < 1)
+                throw new IOException("Invalid quantity " + quantity + " of Part " + partId);
+            if (Inventory.lookupPart(partId) != null) {
+                partIds[kept] = partId;
+                quantities[kept++] = quantity;
+            }
+        }
+        product.addAssociatedParts(BillOfMaterials.of(Arrays.copyOf(partIds, kept), Arrays.copyOf(quantities, kept)));
+    }
+
+    // Associates the Parts listed one ID per unit with the Product. IDs no longer in Inventory are skipped.
+    static void readLegacyAssociatedParts(DataInput in, Product product) throws IOException {
+        int count = in.readInt();
+        List<Part> parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Part part = Inventory.lookupPart(in.readInt());
+            if (part != null)
+                parts.add(part);
+        }
+        product.addAssociatedParts(parts);
+    }
+}
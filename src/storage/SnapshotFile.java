@@ -0,0 +1,173 @@
+package storage;
+
+import model.Inventory;
+import model.InventorySnapshot;
+import model.Part;
+import model.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshots of Inventory.
+ *
+ * This class writes the full contents of Inventory (Parts, Products, and each Product's bill of materials as distinct
+ * Part IDs with quantities) to a single file, together with the LSN of the last log record the snapshot contains and
+ * the next Part and Product IDs. At startup the snapshot is memory mapped and loaded, and only the log records after
+ * its LSN have to be replayed. Storing the ID sequences means an ID is not handed out again after a restart even when
+ * the item that had it was deleted before the snapshot was taken.
+ *
+ * <p> A snapshot is first written to a temporary file and forced to disk, then moved over the previous one, so a crash
+ * while writing always leaves a complete snapshot behind. The file is mapped as a single buffer, which limits it to
+ * 2 GB. </p>
+ */
+public class SnapshotFile {
+    private static final int MAGIC = 0x534E4150;  // "SNAP"
+    private static final int VERSION = 3;
+    // Version 1 had no ID sequences, and versions 1 and 2 listed associated Parts one ID per unit. Both are still read.
+    private static final int FIRST_VERSION = 1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot of Inventory and shortens the log.
+     *
+     * This method takes a consistent snapshot of Inventory together with the log's last LSN, writes it to the given
+     * path, and then removes the log records the snapshot already contains. Only taking the snapshot holds
+     * Inventory's lock; writing it does not block edits.
+     * @param path The path of the snapshot file
+     * @param log The log recording changes to Inventory
+     * @throws IOException If the snapshot or the log cannot be written
+     */
+    public static void checkpoint(Path path, WriteAheadLog log) throws IOException {
+        InventorySnapshot snapshot = Inventory.snapshot(log::getLastLsn);
+        write(path, snapshot);
+        log.truncateThrough(snapshot.getMark());
+    }
+
+    /**
+     * Writes the given snapshot to a file.
+     *
+     * This method stores the snapshot's mark as the snapshot's LSN.
+     * @param path The path of the snapshot file
+     * @param snapshot The snapshot to be written
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path path, InventorySnapshot snapshot) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<Part> parts = snapshot.getParts();
+        List<Product> products = snapshot.getProducts();
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getMark());
+            out.writeInt(snapshot.getNextPartId());
+            out.writeInt(snapshot.getNextProductId());
+            out.writeInt(parts.size());
+            out.writeInt(products.size());
+
+            for (int i = 0; i < parts.size(); i++)
+                Records.writePart(out, parts.get(i), snapshot.getPartStock(i));
+
+            for (int i = 0; i < products.size(); i++) {
+                Records.writeProductFields(out, products.get(i), snapshot.getProductStock(i));
+                Records.writeBillOfMaterials(out, snapshot.getBillOfMaterials(i));
+            }
+
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot into Inventory.
+     *
+     * This method maps the snapshot file into memory, reads its Parts and Products into lists and adds each list to
+     * Inventory in one batch, so the indexes are built once and the lists are changed once rather than once per
+     * record. Inventory should be empty when it is called. The ID sequences are moved forward to the saved ones, never
+     * back.
+     * @param path The path of the snapshot file
+     * @return Returns the LSN stored in the snapshot, or 0 if there is no snapshot
+     * @throws IOException If the file cannot be read or is not a snapshot
+     */
+    public static long load(Path path) throws IOException {
+        if (!Files.exists(path))
+            return 0;
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        DataInputStream in = new DataInputStream(new BufferInput(buffer));
+        int version = in.readInt() == MAGIC ? in.readInt() : -1;
+        if (version < FIRST_VERSION || version > VERSION)
+            throw new IOException("Not an inventory snapshot: " + path);
+
+        long lsn = in.readLong();
+        int nextPartId = version >= 2 ? in.readInt() : 1;
+        int nextProductId = version >= 2 ? in.readInt() : 1;
+        int partCount = in.readInt();
+        int productCount = in.readInt();
+        if (partCount < 0 || productCount < 0)
+            throw new IOException("Not an inventory snapshot: " + path);
+
+        List<Part> parts = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++)
+            parts.add(Records.readPart(in));
+        Inventory.addParts(parts);
+
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++)
+            products.add(version >= 3 ? Records.readProduct(in) : Records.readLegacyProduct(in));
+        Inventory.addProducts(products);
+
+        Inventory.restorePartSequence(nextPartId);
+        Inventory.restoreProductSequence(nextProductId);
+        return lsn;
+    }
+
+    // Reads a mapped buffer as a stream without copying it first
+    private static class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining())
+                return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
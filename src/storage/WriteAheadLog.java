@@ -0,0 +1,524 @@
+package storage;
+
+import model.Inventory;
+import model.InventoryListener;
+import model.Part;
+import model.Product;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes made to Inventory.
+ *
+ * This class records every change to Inventory as a binary record at the end of a log file, so the Parts and Products
+ * survive a restart. Each record holds its length, a CRC32 of its contents, a sequence number (LSN) and the change.
+ * Records are handed to a background thread that writes everything queued since its last write and then forces it
+ * to disk once (group commit), so a burst of edits or an import costs one fsync per batch rather than per record.
+ * The thread that made a change still waits for its records to be on disk before Inventory returns to it (see
+ * afterChange), so a change that has been acknowledged survives a crash; only the waiting is shared.
+ *
+ * <p> If a write or fsync fails, the log stops: every later change to Inventory is refused with an
+ * IllegalStateException, rather than made in memory and silently left out of the log. </p>
+ *
+ * <p> When the log is opened, its records are replayed into Inventory. Replay stops at the first record that is
+ * incomplete or fails its CRC check, which is what a crash in the middle of a write leaves behind, and the log is
+ * cut back to the last good record. </p>
+ */
+public class WriteAheadLog implements InventoryListener, Closeable {
+    private static final byte ADD_PART = 1;
+    private static final byte UPDATE_PART = 2;
+    private static final byte DELETE_PART = 3;
+    private static final byte DELETE_PRODUCT = 6;
+    private static final byte ADJUST_PART_STOCK = 8;
+    private static final byte ADJUST_PRODUCT_STOCK = 9;
+    // Product records list the distinct Part IDs with quantities
+    private static final byte ADD_PRODUCT = 10;
+    private static final byte UPDATE_PRODUCT = 11;
+    private static final byte PRODUCT_PARTS = 12;
+    // The first version of the Product records, which listed one Part ID per unit. Only replayed, no longer written.
+    private static final byte ADD_PRODUCT_V1 = 4;
+    private static final byte UPDATE_PRODUCT_V1 = 5;
+    private static final byte PRODUCT_PARTS_V1 = 7;
+
+    // Length and CRC in front of every record
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final Thread committer;
+
+    // The fields below are guarded by the object itself
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long lastLsn;
+    private long durableLsn;
+    private boolean closed;
+    // Set once the committer thread has stopped, so nothing more will become durable
+    private boolean stopped;
+    private IOException failure;
+
+    // The last LSN each thread appended and has not yet waited for
+    private final ThreadLocal<Long> unflushed = new ThreadLocal<>();
+
+    private WriteAheadLog(Path path, FileChannel channel, long lastLsn) {
+        this.path = path;
+        this.channel = channel;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+
+        committer = new Thread(this::commitLoop, "inventory-wal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Opens a log, replays it into Inventory and starts recording changes.
+     *
+     * This method creates the log file if it does not exist. Otherwise it applies every intact record to Inventory,
+     * drops a torn tail, and registers the log as an Inventory listener.
+     * @param path The path of the log file
+     * @return Returns the opened log
+     * @throws IOException If the file cannot be read or written
+     */
+    public static WriteAheadLog open(Path path) throws IOException {
+        return open(path, 0);
+    }
+
+    /**
+     * Opens a log, replays the records after the given LSN into Inventory and starts recording changes.
+     *
+     * This method is used after loading a snapshot that already contains the changes up to afterLsn.
+     * @param path The path of the log file
+     * @param afterLsn The last LSN already applied to Inventory
+     * @return Returns the opened log
+     * @throws IOException If the file cannot be read or written
+     */
+    public static WriteAheadLog open(Path path, long afterLsn) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            channel.position(0);
+            long[] end = replay(Channels.newInputStream(channel), afterLsn);
+
+            channel.truncate(end[0]);
+            channel.position(end[0]);
+
+            WriteAheadLog log = new WriteAheadLog(path, channel, Math.max(end[1], afterLsn));
+            Inventory.addListener(log);
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Getter for the last LSN.
+     *
+     * @return Returns the sequence number of the last record appended to the log
+     */
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Waits until every record appended so far is on disk.
+     *
+     * @throws IOException If the log could not be written, or was closed before the records were written
+     */
+    public synchronized void flush() throws IOException {
+        awaitDurable(lastLsn);
+    }
+
+    // Waits until the records up to target are on disk
+    private synchronized void awaitDurable(long target) throws IOException {
+        while (durableLsn < target && failure == null && !stopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the log", e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+        if (durableLsn < target)
+            throw new IOException("The inventory log was closed before LSN " + target + " was written");
+    }
+
+    /**
+     * Stops recording, writes any queued records and closes the file.
+     *
+     * @throws IOException If the log could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        Inventory.removeListener(this);
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Removes the records up to and including the given LSN from the log.
+     *
+     * This method is called once a snapshot containing those changes is safely on disk. It waits for queued records
+     * to be written, copies the records after the LSN to a new file and moves it over the log.
+     * @param lsn The last LSN contained in the snapshot
+     * @throws IOException If the log cannot be rewritten
+     */
+    public synchronized void truncateThrough(long lsn) throws IOException {
+        // Let the committer finish so the file holds every record and nothing is being written
+        while ((pending.size() > 0 || durableLsn < lastLsn) && failure == null && !stopped) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the log", e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+        if (closed)
+            return;
+
+        // Find the first record after lsn
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + Long.BYTES);
+        while (position < size) {
+            header.clear();
+            channel.read(header, position);
+            if (header.getLong(HEADER_SIZE) > lsn)
+                break;
+            position += HEADER_SIZE + header.getInt(0);
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tail = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (position < size)
+                position += channel.transferTo(position, size - position, tail);
+            tail.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Refuses changes to Inventory once the log could not be written.
+     *
+     * @throws IllegalStateException If a write or fsync failed, so further changes would not be journaled
+     */
+    @Override
+    public synchronized void beforeChange() {
+        if (failure != null)
+            throw new IllegalStateException("The inventory log could not be written.", failure);
+        if (closed)
+            throw new IllegalStateException("The inventory log is closed.");
+    }
+
+    /**
+     * Waits until the records this thread appended are on disk.
+     *
+     * Inventory calls this on the thread that made a change once its lock is released, so other threads can queue
+     * their records meanwhile and share the fsync.
+     * @throws IllegalStateException If the log failed or was closed before the records were written; the change is
+     * then in memory only
+     */
+    @Override
+    public void afterChange() {
+        Long lsn = unflushed.get();
+        if (lsn == null)
+            return;
+        unflushed.remove();
+
+        try {
+            awaitDurable(lsn);
+        } catch (IOException e) {
+            throw new IllegalStateException("The inventory change could not be written to the log.", e);
+        }
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        append(ADD_PART, out -> Records.writePart(out, part));
+    }
+
+    @Override
+    public void partUpdated(Part oldPart, Part newPart) {
+        append(UPDATE_PART, out -> {
+            out.writeInt(oldPart.getId());
+            Records.writePart(out, newPart);
+        });
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        append(DELETE_PART, out -> out.writeInt(part.getId()));
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        append(ADD_PRODUCT, out -> Records.writeProduct(out, product));
+    }
+
+    @Override
+    public void productUpdated(Product oldProduct, Product newProduct) {
+        append(UPDATE_PRODUCT, out -> {
+            out.writeInt(oldProduct.getId());
+            Records.writeProduct(out, newProduct);
+        });
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        append(DELETE_PRODUCT, out -> out.writeInt(product.getId()));
+    }
+
+    @Override
+    public void associatedPartsChanged(Product product) {
+        append(PRODUCT_PARTS, out -> {
+            out.writeInt(product.getId());
+            Records.writeBillOfMaterials(out, product.getBillOfMaterials());
+        });
+    }
+
+    @Override
+    public void partStockAdjusted(Part part, int delta) {
+        append(ADJUST_PART_STOCK, out -> {
+            out.writeInt(part.getId());
+            out.writeInt(delta);
+        });
+    }
+
+    @Override
+    public void productStockAdjusted(Product product, int delta) {
+        append(ADJUST_PRODUCT_STOCK, out -> {
+            out.writeInt(product.getId());
+            out.writeInt(delta);
+        });
+    }
+
+    // Writes the body of a record
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Encodes a record and queues it for the committer thread
+    private void append(byte type, RecordWriter body) {
+        synchronized (this) {
+            // A change that got past beforeChange just as a write failed or the log closed must not be dropped
+            // without a word
+            beforeChange();
+
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeLong(lastLsn + 1);
+                out.writeByte(type);
+                body.write(out);
+
+                byte[] payload = bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+
+                DataOutputStream record = new DataOutputStream(pending);
+                record.writeInt(payload.length);
+                record.writeInt((int) crc.getValue());
+                record.write(payload);
+            } catch (IOException e) {
+                // Only reachable through a malformed Part, such as a name too long for writeUTF
+                throw new IllegalArgumentException(e);
+            }
+
+            lastLsn++;
+            unflushed.set(lastLsn);
+            notifyAll();
+        }
+    }
+
+    // Runs on the committer thread until the log is closed or fails, then wakes every thread still waiting
+    private void commitLoop() {
+        try {
+            commitBatches();
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+        }
+    }
+
+    // Writes whatever is queued, forces it to disk, repeats
+    private void commitBatches() {
+        while (true) {
+            byte[] batch;
+            long batchLsn;
+            FileChannel target;
+
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0)
+                    return;
+
+                batch = pending.toByteArray();
+                batchLsn = lastLsn;
+                target = channel;
+                pending = new ByteArrayOutputStream();
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining())
+                    target.write(buffer);
+                target.force(false);
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    failure = e;
+                    closed = true;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this) {
+                durableLsn = batchLsn;
+                notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Applies the intact records with an LSN after afterLsn to Inventory.
+     * Returns the length of the intact part of the log and the last LSN found.
+     */
+    private static long[] replay(InputStream stream, long afterLsn) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+        long validLength = 0;
+        long lastLsn = 0;
+
+        while (true) {
+            byte[] payload;
+            int expectedCrc;
+            try {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE)
+                    break;
+                expectedCrc = in.readInt();
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc)
+                break;
+
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            long lsn = record.readLong();
+            if (lsn > afterLsn)
+                apply(record.readByte(), record);
+
+            lastLsn = lsn;
+            validLength += HEADER_SIZE + payload.length;
+        }
+
+        return new long[] {validLength, lastLsn};
+    }
+
+    private static void apply(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case ADD_PART:
+                Inventory.addPart(Records.readPart(in));
+                break;
+            case UPDATE_PART:
+                int oldPartId = in.readInt();
+                Inventory.updatePartById(oldPartId, Records.readPart(in));
+                break;
+            case DELETE_PART:
+                Inventory.deletePartById(in.readInt());
+                break;
+            case ADD_PRODUCT:
+                Inventory.addProduct(Records.readProduct(in));
+                break;
+            case ADD_PRODUCT_V1:
+                Inventory.addProduct(Records.readLegacyProduct(in));
+                break;
+            case UPDATE_PRODUCT:
+                int oldProductId = in.readInt();
+                Inventory.updateProductById(oldProductId, Records.readProduct(in));
+                break;
+            case UPDATE_PRODUCT_V1:
+                int oldLegacyId = in.readInt();
+                Inventory.updateProductById(oldLegacyId, Records.readLegacyProduct(in));
+                break;
+            case DELETE_PRODUCT:
+                Inventory.deleteProductById(in.readInt());
+                break;
+            case PRODUCT_PARTS:
+            case PRODUCT_PARTS_V1:
+                Product current = Inventory.lookupProduct(in.readInt());
+                if (current == null)
+                    break;
+                Product relinked = new Product(current.getId(), current.getName(), current.getPrice(),
+                        current.getStock(), current.getMin(), current.getMax());
+                if (type == PRODUCT_PARTS)
+                    Records.readBillOfMaterials(in, relinked);
+                else
+                    Records.readLegacyAssociatedParts(in, relinked);
+                Inventory.updateProductById(current.getId(), relinked);
+                break;
+            case ADJUST_PART_STOCK:
+                Inventory.replayPartStock(in.readInt(), in.readInt());
+                break;
+            case ADJUST_PRODUCT_STOCK:
+                Inventory.replayProductStock(in.readInt(), in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown log record type " + type);
+        }
+    }
+}